@@ -21,6 +21,10 @@ package org.fit.pdfdom;
 
 /**
  * This class represents a style of a text box.
+ * 
+ * The position properties (left, top and line height) are not considered in {@link #equals(Object)};
+ * they may be passed to {@link #toString(float, float, float)} for every box so that a single style
+ * instance may be used for all the text boxes with the same font properties.
  * @author radek
  */
 public class BoxStyle
@@ -68,31 +72,69 @@ public class BoxStyle
 		top = 0;
 	}
 	
+	/**
+	 * Creates a copy of a style.
+	 * @param src the source style
+	 */
 	public BoxStyle(BoxStyle src)
 	{
-		this.units = new String(src.units);
-		fontFamily = src.fontFamily == null ? null : new String(src.fontFamily);
+		this.units = src.units;
+		fontFamily = src.fontFamily;
 		fontSize = src.fontSize;
-		fontWeight = src.fontWeight == null ? null : new String(src.fontWeight);
-		fontStyle = src.fontStyle == null ? null : new String(src.fontStyle);
+		fontWeight = src.fontWeight;
+		fontStyle = src.fontStyle;
 		lineHeight = src.lineHeight;
 		wordSpacing = src.wordSpacing;
 		letterSpacing = src.letterSpacing;
-		color = src.color == null ? null : new String(src.color);
-		position = src.position == null ? null : new String(src.position);
+		color = src.color;
+		position = src.position;
 		left = src.left;
 		top = src.top;
 		strokeColor = src.strokeColor;
 	}
 	
 	public String toString()
+	{
+		return toString(top, left, lineHeight);
+	}
+	
+	/**
+	 * Creates the CSS representation of the style placed at the given position.
+	 * @param top the top coordinate
+	 * @param left the left coordinate
+	 * @param lineHeight the line height
+	 * @return the CSS style string
+	 */
+	public String toString(float top, float left, float lineHeight)
+	{
+		final String font = getFontCss();
+		StringBuilder ret = new StringBuilder(font.length() + 64);
+		appendPosition(ret, top, left, lineHeight);
+		ret.append(font);
+		return ret.toString();
+	}
+	
+	/**
+	 * Creates the CSS representation of the position properties only.
+	 * @param top the top coordinate
+	 * @param left the left coordinate
+	 * @param lineHeight the line height
+	 * @return the CSS style string
+	 */
+	public String toPositionString(float top, float left, float lineHeight)
+	{
+		StringBuilder ret = new StringBuilder(64);
+		appendPosition(ret, top, left, lineHeight);
+		return ret.toString();
+	}
+	
+	/**
+	 * Obtains the CSS representation of the style properties except the position ones.
+	 * @return the CSS style string
+	 */
+	public String getFontCss()
 	{
 		StringBuilder ret = new StringBuilder();
-		if (position != null && !position.equals(defaultPosition))
-			appendString(ret, "position", position);
-		appendLength(ret, "top", top);
-		appendLength(ret, "left", left);
-		appendLength(ret, "line-height", lineHeight);
 		if (fontFamily != null)
 			appendString(ret, "font-family", fontFamily);
 		if (fontSize != 0)
@@ -113,6 +155,15 @@ public class BoxStyle
 		return ret.toString();
 	}
 	
+	private void appendPosition(StringBuilder ret, float top, float left, float lineHeight)
+	{
+		if (position != null && !position.equals(defaultPosition))
+			appendString(ret, "position", position);
+		appendLength(ret, "top", top);
+		appendLength(ret, "left", left);
+		appendLength(ret, "line-height", lineHeight);
+	}
+	
 	private void appendString(StringBuilder s, String propertyName, String value)
 	{
 		s.append(propertyName);
@@ -344,6 +395,11 @@ public class BoxStyle
 
 	//================================================================
 	
+	private static boolean equal(String s1, String s2)
+	{
+		return (s1 == null) ? (s2 == null) : s1.equals(s2);
+	}
+	
     @Override
     public int hashCode()
     {
@@ -360,6 +416,8 @@ public class BoxStyle
                 + ((fontWeight == null) ? 0 : fontWeight.hashCode());
         result = prime * result + Float.floatToIntBits(letterSpacing);
         result = prime * result + Float.floatToIntBits(wordSpacing);
+        result = prime * result + ((units == null) ? 0 : units.hashCode());
+        result = prime * result + ((position == null) ? 0 : position.hashCode());
         return result;
     }
 
@@ -401,6 +459,8 @@ public class BoxStyle
                 .floatToIntBits(other.letterSpacing)) return false;
         if (Float.floatToIntBits(wordSpacing) != Float
                 .floatToIntBits(other.wordSpacing)) return false;
+        if (!equal(units, other.units)) return false;
+        if (!equal(position, other.position)) return false;
         return true;
     }
 
@@ -4,15 +4,29 @@
 package org.fit.pdfdom;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.fit.pdfdom.resource.CachedFont;
+import org.fit.pdfdom.resource.ContentHash;
+import org.fit.pdfdom.resource.FontCache;
 import org.fit.pdfdom.resource.HtmlResource;
 import org.mabb.fontverter.FVFont;
 import org.mabb.fontverter.FontVerter;
@@ -31,33 +45,143 @@ public class FontTable
     private static Pattern fontFamilyRegex = Pattern.compile("([^+^-]*)[+-]([^+]*)");
 
     private List<Entry> entries = new ArrayList<Entry>();
+    /** Entries indexed by the font name, type and subtype */
+    private Map<FontKey, Entry> entryIndex = new HashMap<FontKey, Entry>();
+    /** Entries indexed by the font dictionaries already found in the table */
+    private Map<COSDictionary, Entry> fontIndex = new IdentityHashMap<COSDictionary, Entry>();
+    private Set<String> usedNames = new HashSet<String>();
+    private FontCache fontCache;
+    /** The table that assigns the names of the used fonts or {@code null} when the names are assigned locally */
+    private final FontTable nameSource;
+
+    /**
+     * Creates an empty font table.
+     */
+    public FontTable()
+    {
+        this(null);
+    }
 
+    /**
+     * Creates an empty font table that obtains the names of the used fonts from another table.
+     * The used fonts are registered in the other table and they get the names assigned by that table.
+     * This allows the tables used for processing different parts of a document in parallel
+     * to produce the same font names.
+     * @param nameSource the table that assigns the font names or {@code null} for assigning the names locally
+     */
+    public FontTable(FontTable nameSource)
+    {
+        this.nameSource = nameSource;
+    }
+
+    /**
+     * Obtains the cache used for the converted font data.
+     * @return the font cache or {@code null} when no cache is used
+     */
+    public FontCache getFontCache()
+    {
+        return fontCache;
+    }
+
+    /**
+     * Sets the cache used for the converted font data. The cache may be shared among multiple
+     * font tables and documents.
+     * @param fontCache the font cache or {@code null} for no caching
+     */
+    public void setFontCache(FontCache fontCache)
+    {
+        this.fontCache = fontCache;
+    }
+
+    /**
+     * Adds a font to the table. The font data is not converted and no name is assigned to the font
+     * until the font is used (see {@link #useFont(PDFont)}).
+     * @param font the font to be added
+     */
     public void addEntry(PDFont font)
     {
         FontTable.Entry entry = get(font);
 
         if (entry == null)
         {
-            String fontName = font.getName();
-            String family = findFontFamily(fontName);
+            FontTable.Entry newEntry = new FontTable.Entry(font.getName(), null, font);
+            add(newEntry);
+        }
+    }
 
-            String usedName = nextUsedName(family);
-            FontTable.Entry newEntry = new FontTable.Entry(font.getName(), usedName, font);
+    /**
+     * Adds an entry of a used font taken from another font table (e.g. a table created while processing
+     * a different part of the document). When the font is already present in this table, the
+     * existing entry is kept. This method may be called concurrently by multiple threads.
+     * @param src the source entry
+     * @return the name used for the font in this table
+     */
+    public synchronized String addEntry(Entry src)
+    {
+        //the index of the dictionaries is not used, the dictionaries belong to a different document
+        FontTable.Entry entry = entryIndex.get(src.key);
 
-            if (newEntry.isEntryValid())
-                add(newEntry);
+        if (entry == null)
+        {
+            entry = new FontTable.Entry(src, null);
+            add(entry);
         }
+        if (entry.usedName == null)
+            assignUsedName(entry);
+        entry.used = true;
+        return entry.usedName;
+    }
+
+    /**
+     * Marks a font as used by the rendered text. The font data is converted when the font
+     * is used for the first time; the font name is assigned once the data has been converted
+     * successfully so that the fonts that cannot be used do not occupy any names.
+     * @param font the used font
+     * @return the name used for the font or {@code null} when the font is not present in the table
+     * or its data cannot be converted
+     */
+    public String useFont(PDFont font)
+    {
+        FontTable.Entry entry = get(font);
+        if (entry != null && entry.isEntryValid())
+        {
+            if (entry.usedName == null)
+            {
+                if (nameSource != null)
+                {
+                    entry.usedName = nameSource.addEntry(entry);
+                    usedNames.add(entry.usedName);
+                }
+                else
+                    assignUsedName(entry);
+            }
+            entry.used = true;
+            return entry.usedName;
+        }
+        else
+            return null;
     }
 
     public Entry get(PDFont find)
     {
-        for (Entry entryOn : entries)
+        final COSDictionary dict = find.getCOSObject();
+        Entry entry = fontIndex.get(dict);
+        if (entry == null)
         {
-            if (entryOn.equalToPDFont(find))
-                return entryOn;
+            entry = entryIndex.get(new FontKey(find));
+            if (entry != null)
+                fontIndex.put(dict, entry);
         }
+        return entry;
+    }
 
-        return null;
+    /**
+     * Clears the index of the font dictionaries so that the table does not keep the dictionaries
+     * of the documents processed before. The entries remain in the table.
+     */
+    public void clearFontIndex()
+    {
+        fontIndex.clear();
     }
 
     public List<Entry> getEntries()
@@ -65,6 +189,26 @@ public class FontTable
         return new ArrayList<Entry>(entries);
     }
 
+    /**
+     * Obtains the entries of the fonts that have been used by the rendered text.
+     * @return the list of used entries
+     */
+    public List<Entry> getUsedEntries()
+    {
+        List<Entry> ret = new ArrayList<Entry>();
+        for (Entry entryOn : entries)
+        {
+            if (entryOn.used)
+                ret.add(entryOn);
+        }
+        return ret;
+    }
+
+    /**
+     * Obtains the name assigned to a font.
+     * @param font the font
+     * @return the name or {@code null} when the font is not present in the table or it has not been used yet
+     */
     public String getUsedName(PDFont font)
     {
         FontTable.Entry entry = get(font);
@@ -74,6 +218,12 @@ public class FontTable
             return entry.usedName;
     }
 
+    private void assignUsedName(Entry entry)
+    {
+        entry.usedName = nextUsedName(findFontFamily(entry.fontName));
+        usedNames.add(entry.usedName);
+    }
+
     protected String nextUsedName(String fontName)
     {
         int i = 1;
@@ -89,17 +239,14 @@ public class FontTable
 
     protected boolean isNameUsed(String name)
     {
-        for (Entry entryOn : entries)
-        {
-            if (entryOn.usedName.equals(name))
-                return true;
-        }
-
-        return false;
+        return usedNames.contains(name);
     }
 
     protected void add(Entry entry) {
         entries.add(entry);
+        entryIndex.put(entry.key, entry);
+        if (entry.usedName != null)
+            usedNames.add(entry.usedName);
     }
 
     private String findFontFamily(String fontName)
@@ -124,9 +271,12 @@ public class FontTable
         public PDFontDescriptor descriptor;
 
         private PDFont baseFont;
+        private FontKey key;
         private byte[] cachedFontData;
         private String mimeType = "x-font-truetype";
         private String fileEnding;
+        private Boolean valid;
+        private boolean used;
 
         public Entry(String fontName, String usedName, PDFont font)
         {
@@ -136,6 +286,23 @@ public class FontTable
             this.usedName = usedName;
             this.descriptor = font.getFontDescriptor();
             this.baseFont = font;
+            this.key = new FontKey(font);
+        }
+
+        private Entry(Entry src, String usedName)
+        {
+            super(src.fontName);
+
+            this.fontName = src.fontName;
+            this.usedName = usedName;
+            this.descriptor = src.descriptor;
+            this.baseFont = src.baseFont;
+            this.key = src.key;
+            this.cachedFontData = src.cachedFontData;
+            this.mimeType = src.mimeType;
+            this.fileEnding = src.fileEnding;
+            this.valid = src.valid;
+            this.used = src.used;
         }
 
         public byte[] getData() throws IOException
@@ -143,6 +310,19 @@ public class FontTable
             if (cachedFontData != null)
                 return cachedFontData;
 
+            final String cacheKey = fontCache != null ? createCacheKey() : null;
+            if (cacheKey != null)
+            {
+                CachedFont cached = fontCache.get(cacheKey);
+                if (cached != null)
+                {
+                    cachedFontData = cached.getData();
+                    mimeType = cached.getMimeType();
+                    fileEnding = cached.getFileEnding();
+                    return cachedFontData;
+                }
+            }
+
             if (descriptor.getFontFile2() != null && baseFont instanceof PDType0Font)
                 cachedFontData = loadType0TtfDescendantFont();
             else if (descriptor.getFontFile2() != null)
@@ -153,20 +333,97 @@ public class FontTable
                 // FontFile3 docs say any font type besides TTF/OTF or Type 1..
                 cachedFontData = loadOtherTypeFont(descriptor.getFontFile3());
 
+            if (cacheKey != null && cachedFontData != null)
+                fontCache.put(cacheKey, new CachedFont(cachedFontData, mimeType, fileEnding));
+
             return cachedFontData;
         }
 
-        public boolean isEntryValid() {
-            byte[] fontData = new byte[0];
+        /**
+         * Creates the font cache key. The key is a hash of the raw font program stream prefixed
+         * with the conversion kind. For Type 0 fonts, the ToUnicode map used for the conversion
+         * is included as well.
+         * @return the key or {@code null} when the font has no embedded program
+         * @throws IOException
+         */
+        private String createCacheKey() throws IOException
+        {
+            final String kind;
+            final PDStream fontFile;
+            if (descriptor.getFontFile2() != null && baseFont instanceof PDType0Font)
+            {
+                kind = "type0";
+                fontFile = descriptor.getFontFile2();
+            }
+            else if (descriptor.getFontFile2() != null)
+            {
+                kind = "ttf";
+                fontFile = descriptor.getFontFile2();
+            }
+            else if (descriptor.getFontFile() != null)
+            {
+                kind = "type1";
+                fontFile = descriptor.getFontFile();
+            }
+            else if (descriptor.getFontFile3() != null)
+            {
+                kind = "other";
+                fontFile = descriptor.getFontFile3();
+            }
+            else
+                return null;
+
+            MessageDigest digest = ContentHash.createDigest();
+            updateDigest(digest, fontFile.getCOSObject());
+            if (baseFont instanceof PDType0Font)
+            {
+                COSBase toUnicode = baseFont.getCOSObject().getDictionaryObject(COSName.TO_UNICODE);
+                if (toUnicode instanceof COSStream)
+                    updateDigest(digest, (COSStream) toUnicode);
+            }
+            return kind + ":" + ContentHash.toHex(digest.digest());
+        }
+
+        private void updateDigest(MessageDigest digest, COSStream stream) throws IOException
+        {
+            InputStream is = stream.createRawInputStream();
             try
             {
-                fontData = getData();
-            } catch (IOException e)
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = is.read(buffer)) != -1)
+                    digest.update(buffer, 0, len);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        public boolean isEntryValid() {
+            if (valid == null)
             {
-                log.warn("Error loading font '{}' Message: {} {}", fontName, e.getMessage(), e.getClass());
+                byte[] fontData = new byte[0];
+                try
+                {
+                    fontData = getData();
+                } catch (IOException e)
+                {
+                    log.warn("Error loading font '{}' Message: {} {}", fontName, e.getMessage(), e.getClass());
+                }
+
+                valid = fontData != null && fontData.length != 0;
             }
+            return valid;
+        }
 
-            return fontData != null && fontData.length != 0;
+        /**
+         * Checks whether the font has been used by the rendered text.
+         * @return {@code true} when the font has been used
+         */
+        public boolean isUsed()
+        {
+            return used;
         }
 
         private byte[] loadTrueTypeFont(PDStream fontFile) throws IOException
@@ -259,9 +516,7 @@ public class FontTable
             // Appears you can have two different fonts with the same actual font name since text position font
             // references go off a seperate dict lookup name. PDFBox doesn't include the lookup name with the
             // PDFont, so might have to submit a change there to be really sure fonts are indeed the same.
-            return compare.getName().equals(baseFont.getName()) &&
-                    compare.getType().equals(baseFont.getType()) &&
-                    compare.getSubType().equals(baseFont.getSubType());
+            return key.equals(new FontKey(compare));
         }
 
         @Override
@@ -300,4 +555,45 @@ public class FontTable
             return mimeType;
         }
     }
+
+    /**
+     * The font identification used for finding the font entries: the font name, type and subtype.
+     */
+    private static class FontKey
+    {
+        private final String name;
+        private final String type;
+        private final String subType;
+
+        public FontKey(PDFont font)
+        {
+            this.name = font.getName();
+            this.type = font.getType();
+            this.subType = font.getSubType();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = 1;
+            result = 31 * result + ((name == null) ? 0 : name.hashCode());
+            result = 31 * result + ((type == null) ? 0 : type.hashCode());
+            result = 31 * result + ((subType == null) ? 0 : subType.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            FontKey other = (FontKey) obj;
+            return equal(name, other.name) && equal(type, other.type) && equal(subType, other.subType);
+        }
+
+        private static boolean equal(String a, String b)
+        {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
 }
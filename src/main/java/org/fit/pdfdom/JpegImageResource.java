@@ -0,0 +1,90 @@
+/**
+ * JpegImageResource.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.fit.pdfdom.resource.ImageResource;
+
+/**
+ * An image resource that provides the original JPEG data of a DCT encoded image XObject
+ * without decoding it.
+ */
+class JpegImageResource extends ImageResource
+{
+    private final PDImageXObject pdfImage;
+
+    /**
+     * Creates a new image resource.
+     * @param name the resource name
+     * @param pdfImage the source image XObject; it must be encoded using the DCTDecode filter only
+     */
+    public JpegImageResource(String name, PDImageXObject pdfImage)
+    {
+        super(name);
+        this.pdfImage = pdfImage;
+    }
+
+    @Override
+    protected BufferedImage getImage() throws IOException
+    {
+        return pdfImage.getImage();
+    }
+
+    @Override
+    public byte[] getData() throws IOException
+    {
+        InputStream is = pdfImage.getCOSObject().createRawInputStream();
+        try
+        {
+            return IOUtils.toByteArray(is);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    @Override
+    public String getFileEnding()
+    {
+        return "jpg";
+    }
+
+    @Override
+    public String getMimeType()
+    {
+        return "image/jpeg";
+    }
+
+    @Override
+    public float getWidth()
+    {
+        return pdfImage.getWidth();
+    }
+
+    @Override
+    public float getHeight()
+    {
+        return pdfImage.getHeight();
+    }
+
+}
@@ -22,13 +22,16 @@ package org.fit.pdfdom;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
 import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.contentstream.operator.color.SetNonStrokingColor;
@@ -52,9 +55,12 @@ import org.apache.pdfbox.contentstream.operator.state.SetLineWidth;
 import org.apache.pdfbox.contentstream.operator.state.SetRenderingIntent;
 import org.apache.pdfbox.contentstream.operator.text.SetFontAndSize;
 import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
@@ -62,11 +68,15 @@ import org.apache.pdfbox.pdmodel.font.*;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
+import org.fit.pdfdom.resource.IgnoreResourceHandler;
 import org.fit.pdfdom.resource.ImageResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,6 +97,21 @@ public abstract class PDFBoxTree extends PDFTextStripper
     /** Length units used in the generated CSS */
     public static final String UNIT = "pt";
 
+    /** The maximal total length of the image sources kept for the repeated images (in characters) */
+    public static final int MAX_REUSED_IMAGE_SOURCES_LENGTH = 8 * 1024 * 1024;
+
+    /** The SVG namespace used for the vector path layers */
+    public static final String SVG_NS = "http://www.w3.org/2000/svg";
+
+    /** Default style placed in the begining of the resulting document */
+    protected String defaultStyle = ".page{position:relative;z-index:0; border:1px solid blue;margin:0.5em}\n" +
+            ".p,.r{position:absolute;}\n" +
+            ".p{white-space:nowrap;}\n" +
+            // disable text-shadow fallback for text stroke if stroke supported by browser
+            "@supports(-webkit-text-stroke: 1px black) {" +
+                ".p{text-shadow:none !important;}" +
+            "}";
+
     /** Known font names that are recognized in the PDF files */
     protected static String[] cssFontFamily = { "Times New Roman", "Times", "Garamond", "Helvetica", "Arial Narrow", "Arial", "Verdana", "Courier New", "MS Sans Serif" };
 
@@ -114,6 +139,11 @@ public abstract class PDFBoxTree extends PDFTextStripper
     /** The PDF page currently being processed */
     protected PDPage pdpage;
 
+    /** The transformation of the current page coordinates to the output coordinates */
+    private AffineTransform pageTransform;
+    /** The page the {@link #pageTransform} has been created for */
+    private PDPage pageTransformPage;
+
     /** Current text coordinates (the coordinates of the last encountered text box). */
     protected float cur_x;
     /** Current text coordinates (the coordinates of the last encountered text box). */
@@ -141,7 +171,11 @@ public abstract class PDFBoxTree extends PDFTextStripper
     protected TextMetrics textMetrics;
 
     /** Current graphics path */
-    protected Vector<PathSegment> graphicsPath;
+    protected PathBuffer graphicsPath;
+
+    /** Buffers for the transformed path points */
+    private final float[] point1 = new float[2];
+    private final float[] point2 = new float[2];
 
     /** The style of the future box being modified by the operators */
     protected BoxStyle style;
@@ -149,6 +183,43 @@ public abstract class PDFBoxTree extends PDFTextStripper
     /** The style of the text line being created */
     protected BoxStyle curstyle;
 
+    /** CSS class names assigned to the text styles in the current document (in the order of creation) */
+    protected Map<BoxStyle, String> styleClasses;
+
+    /** Resource handling configuration */
+    protected PDFDomTreeConfig config;
+
+    /** Images already processed in the current document, indexed by their source stream, rotation and subsampling */
+    protected Map<ImageKey, ImageResource> imageCache;
+
+    /** Image sources produced for the cached images on the current page (<code>null</code> when not produced yet) */
+    protected Map<ImageResource, String> imageSources;
+
+    /** The cached images that occur repeatedly in the current document */
+    protected Set<ImageResource> reusedImages;
+
+    /** Image sources kept for the repeated images, the least recently used first */
+    protected Map<ImageResource, String> reusedImageSources;
+
+    /** The total length of the image sources in {@link #reusedImageSources} */
+    private long reusedImageSourcesLength;
+
+    /** Style properties of the fonts used in the current document, indexed by the font dictionaries */
+    protected Map<COSDictionary, FontStyle> fontStyles;
+
+    /** Metrics of the fonts used in the current document, indexed by the font dictionaries */
+    protected Map<COSDictionary, TextMetrics.FontMetrics> fontMetrics;
+
+    /** Maximal number of the converted colors kept in the color cache */
+    protected static final int MAX_CACHED_COLORS = 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** CSS color strings of the colors already converted in the current document */
+    protected Map<ColorKey, String> colorCache;
+
+    /** Handlers of the content stream operators indexed by the operator names */
+    protected Map<String, OperatorHandler> operatorHandlers;
 
 
     public PDFBoxTree() throws IOException
@@ -179,6 +250,10 @@ public abstract class PDFBoxTree extends PDFTextStripper
         addOperator(new SetFontAndSize());
         addOperator(new SetLineWidth());
 
+        //add handlers of the operators that create the output
+        operatorHandlers = new HashMap<String, OperatorHandler>();
+        addOperatorHandlers();
+
         init();
     }
 
@@ -188,12 +263,38 @@ public abstract class PDFBoxTree extends PDFTextStripper
     private void init()
     {
         style = new BoxStyle(UNIT);
+        styleClasses = new LinkedHashMap<BoxStyle, String>();
         textLine = new StringBuilder();
         textMetrics = null;
-        graphicsPath = new Vector<PathSegment>();
+        graphicsPath = new PathBuffer();
         startPage = 0;
         endPage = Integer.MAX_VALUE;
         fontTable = new FontTable();
+        config = PDFDomTreeConfig.createDefaultConfig();
+        imageCache = new HashMap<ImageKey, ImageResource>();
+        imageSources = new IdentityHashMap<ImageResource, String>();
+        reusedImages = Collections.newSetFromMap(new IdentityHashMap<ImageResource, Boolean>());
+        reusedImageSources = new LinkedHashMap<ImageResource, String>(16, 0.75f, true);
+        fontStyles = new IdentityHashMap<COSDictionary, FontStyle>();
+        fontMetrics = new IdentityHashMap<COSDictionary, TextMetrics.FontMetrics>();
+        colorCache = new HashMap<ColorKey, String>();
+    }
+
+    @Override
+    protected void startDocument(PDDocument document) throws IOException
+    {
+        //the cached images are only valid within a single document
+        imageCache.clear();
+        imageSources.clear();
+        reusedImages.clear();
+        reusedImageSources.clear();
+        reusedImageSourcesLength = 0;
+        fontStyles.clear();
+        fontMetrics.clear();
+        colorCache.clear();
+        styleClasses.clear();
+        fontTable.clearFontIndex();
+        fontTable.setFontCache(config.getFontCache());
     }
 
 
@@ -202,10 +303,15 @@ public abstract class PDFBoxTree extends PDFTextStripper
         if (getCurrentPageNo() >= startPage && getCurrentPageNo() <= endPage)
         {
             pdpage = page;
+            pageTransform = createCurrentPageTransformation();
+            pageTransformPage = page;
             updateFontTable();
             startNewPage();
             super.processPage(page);
             finishBox();
+            finishPage();
+            //the sources of the images that have not been repeated are not needed anymore
+            imageSources.clear();
         }
     }
 
@@ -295,6 +401,15 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected abstract void startNewPage();
 
+    /**
+     * Finishes the current page after all its contents have been rendered. The default
+     * implementation does nothing.
+     * @throws IOException
+     */
+    protected void finishPage() throws IOException
+    {
+    }
+
     /**
      * Creates a new text box in the current page. The style and position of the text are contained
      * in the {@link PDFBoxTree#curstyle} property. 
@@ -303,12 +418,26 @@ public abstract class PDFBoxTree extends PDFTextStripper
     protected abstract void renderText(String data, TextMetrics metrics);
 
     /**
-     * Adds a rectangle to the current page on the specified position.
-     * @param rect the rectangle to be rendered
+     * Adds a path to the current page. The path buffer is reused for the following paths, so its
+     * contents must not be kept after returning.
+     * @param path the path to be rendered
      * @param stroke should there be a stroke around?
-     * @param fill should the rectangle be filled?
+     * @param fill should the path be filled?
      */
-    protected abstract void renderPath(List<PathSegment> path, boolean stroke, boolean fill) throws IOException;
+    protected abstract void renderPath(PathBuffer path, boolean stroke, boolean fill) throws IOException;
+
+    /**
+     * Adds a path to the current page using the given fill rule. The default implementation ignores
+     * the fill rule and calls {@link #renderPath(PathBuffer, boolean, boolean)}.
+     * @param path the path to be rendered
+     * @param stroke should there be a stroke around?
+     * @param fill should the path be filled?
+     * @param evenOdd should the even-odd rule be used for filling instead of the nonzero winding rule?
+     */
+    protected void renderPath(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd) throws IOException
+    {
+        renderPath(path, stroke, fill);
+    }
 
     /**
      * Adds an image to the current page.
@@ -322,23 +451,60 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected abstract void renderImage(float x, float y, float width, float height, ImageResource data) throws IOException;
 
-    protected float[] toRectangle(List<PathSegment> path)
+    /**
+     * Adds a rotated image to the current page. The image box is rotated around its center.
+     * The default implementation ignores the rotation and calls
+     * {@link #renderImage(float, float, float, float, ImageResource)}.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @param data the image data
+     * @throws IOException
+     */
+    protected void renderImage(float x, float y, float width, float height, float rotation, ImageResource data) throws IOException
+    {
+        renderImage(x, y, width, height, data);
+    }
+
+    /**
+     * Adds a rotated and possibly mirrored image to the current page. The image box is mirrored
+     * vertically and then rotated around its center. The default implementation ignores the mirroring
+     * and calls {@link #renderImage(float, float, float, float, float, ImageResource)}.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @param mirrored <code>true</code> when the image is drawn mirrored
+     * @param data the image data
+     * @throws IOException
+     */
+    protected void renderImage(float x, float y, float width, float height, float rotation, boolean mirrored,
+            ImageResource data) throws IOException
+    {
+        renderImage(x, y, width, height, rotation, data);
+    }
+
+    protected float[] toRectangle(PathBuffer path)
     {
         if (path.size() == 4)
         {
-            Set<Float> xc = new HashSet<Float>();
-            Set<Float> yc = new HashSet<Float>();
             //find x/y 1/2
-            for (PathSegment line : path)
+            final float[] xc = new float[2];
+            final float[] yc = new float[2];
+            int xcnt = 0, ycnt = 0;
+            for (int i = 0; i < 4 && xcnt <= 2 && ycnt <= 2; i++)
             {
-                xc.add(line.getX1());
-                xc.add(line.getX2());
-                yc.add(line.getY1());
-                yc.add(line.getY2());
+                xcnt = addCoordinate(xc, xcnt, path.getX1(i));
+                xcnt = addCoordinate(xc, xcnt, path.getX2(i));
+                ycnt = addCoordinate(yc, ycnt, path.getY1(i));
+                ycnt = addCoordinate(yc, ycnt, path.getY2(i));
             }
-            if (xc.size() == 2 && yc.size() == 2)
+            if (xcnt == 2 && ycnt == 2)
             {
-                return new float[]{Collections.min(xc), Collections.min(yc), Collections.max(xc), Collections.max(yc)};
+                return new float[]{Math.min(xc[0], xc[1]), Math.min(yc[0], yc[1]), Math.max(xc[0], xc[1]), Math.max(yc[0], yc[1])};
             }
             else
                 return null; //two different X and Y coordinates required
@@ -347,11 +513,32 @@ public abstract class PDFBoxTree extends PDFTextStripper
             return null; //four segments required
     }
 
+    /**
+     * Adds a coordinate to a set of at most two distinct values.
+     * @return the new number of distinct values (3 when there are more than two values)
+     */
+    private int addCoordinate(float[] values, int count, float value)
+    {
+        final int bits = Float.floatToIntBits(value);
+        for (int i = 0; i < count && i < values.length; i++)
+        {
+            if (Float.floatToIntBits(values[i]) == bits)
+                return count;
+        }
+        if (count < values.length)
+            values[count] = value;
+        return Math.min(count + 1, values.length + 1);
+    }
+
     /**
      * Updates the font table by adding new fonts used at the current page.
      */
     protected void updateFontTable()
     {
+        // skip font processing completley if ignore fonts mode to optimize processing speed
+        if (config.getFontHandler() instanceof IgnoreResourceHandler)
+            return;
+
         PDResources resources = pdpage.getResources();
         if (resources != null)
         {
@@ -411,134 +598,142 @@ public abstract class PDFBoxTree extends PDFTextStripper
     protected void processOperator(Operator operator, List<COSBase> arguments)
             throws IOException
     {
-        String operation = operator.getName();
-        /*System.out.println("Operator: " + operation + ":" + arguments.size());
-        if (operation.equals("sc") || operation.equals("cs"))
-        {
-            System.out.print("  ");
-            for (int i = 0; i < arguments.size(); i++)
-                System.out.print(arguments.get(i) + " ");
-            System.out.println();
-        }*/
+        OperatorHandler handler = operatorHandlers.get(operator.getName());
+        if (handler != null)
+            handler.process(operator, arguments);
 
+        super.processOperator(operator, arguments);
+    }
+
+    /**
+     * Registers a handler of a content stream operator. The handler is invoked before the operator
+     * is passed to the standard PDFBox processing. An existing handler of the same operator is replaced.
+     * @param name the operator name
+     * @param handler the handler to be used
+     */
+    protected void addOperatorHandler(String name, OperatorHandler handler)
+    {
+        operatorHandlers.put(name, handler);
+    }
+
+    /**
+     * Obtains the handler registered for a content stream operator.
+     * @param name the operator name
+     * @return the handler or {@code null} when no handler is registered
+     */
+    protected OperatorHandler getOperatorHandler(String name)
+    {
+        return operatorHandlers.get(name);
+    }
+
+    /**
+     * Registers the handlers of the operators that affect the text style, the graphics paths
+     * and the images.
+     */
+    private void addOperatorHandlers()
+    {
         //word spacing
-        if (operation.equals("Tw"))
-        {
-            style.setWordSpacing(getLength(arguments.get(0)));
-        }
+        addOperatorHandler("Tw", new OperatorHandler() {
+            public void process(Operator operator, List<COSBase> arguments)
+            {
+                style.setWordSpacing(getLength(arguments.get(0)));
+            }
+        });
 
         //letter spacing
-        else if (operation.equals("Tc"))
-        {
-            style.setLetterSpacing(getLength(arguments.get(0)));
-        }
+        addOperatorHandler("Tc", new OperatorHandler() {
+            public void process(Operator operator, List<COSBase> arguments)
+            {
+                style.setLetterSpacing(getLength(arguments.get(0)));
+            }
+        });
 
         //graphics
-        else if (operation.equals("m")) //move
-        {
-            if (!disableGraphics)
+        addOperatorHandler("m", new OperatorHandler() { //move
+            public void process(Operator operator, List<COSBase> arguments)
             {
-                if (arguments.size() == 2)
+                if (!disableGraphics && arguments.size() == 2)
                 {
-                    float[] pos = transformPosition(getLength(arguments.get(0)), getLength(arguments.get(1)));
-                    path_x = pos[0];
-                    path_y = pos[1];
-                    path_start_x = pos[0];
-                    path_start_y = pos[1];
+                    transformPosition(getLength(arguments.get(0)), getLength(arguments.get(1)), point1);
+                    path_x = point1[0];
+                    path_y = point1[1];
+                    path_start_x = point1[0];
+                    path_start_y = point1[1];
                 }
             }
-        }
-        else if (operation.equals("l")) //line
-        {
-            if (!disableGraphics)
+        });
+        addOperatorHandler("l", new OperatorHandler() { //line
+            public void process(Operator operator, List<COSBase> arguments)
             {
-                if (arguments.size() == 2)
+                if (!disableGraphics && arguments.size() == 2)
                 {
-                    float[] pos = transformPosition(getLength(arguments.get(0)), getLength(arguments.get(1)));
-                    graphicsPath.add(new PathSegment(path_x, path_y, pos[0], pos[1]));
-                    path_x = pos[0];
-                    path_y = pos[1];
+                    transformPosition(getLength(arguments.get(0)), getLength(arguments.get(1)), point1);
+                    graphicsPath.addLine(path_x, path_y, point1[0], point1[1]);
+                    path_x = point1[0];
+                    path_y = point1[1];
                 }
             }
-        }
-        else if (operation.equals("h")) //end subpath
-        {
-            if (!disableGraphics)
+        });
+        addOperatorHandler("h", new OperatorHandler() { //end subpath
+            public void process(Operator operator, List<COSBase> arguments)
             {
-                graphicsPath.add(new PathSegment(path_x, path_y, path_start_x, path_start_y));
+                if (!disableGraphics)
+                    graphicsPath.addClose(path_x, path_y, path_start_x, path_start_y);
             }
-        }
+        });
 
         //rectangle
-        else if (operation.equals("re"))
-        {
-            if (!disableGraphics)
+        addOperatorHandler("re", new OperatorHandler() {
+            public void process(Operator operator, List<COSBase> arguments)
             {
-                if (arguments.size() == 4)
+                if (!disableGraphics && arguments.size() == 4)
                 {
-                	float x = getLength(arguments.get(0));
-                	float y = getLength(arguments.get(1));
-                	float width = getLength(arguments.get(2));
-                	float height = getLength(arguments.get(3));
-
-                    float[] p1 = transformPosition(x, y);
-                    float[] p2 = transformPosition(x + width, y + height);
-
-                	graphicsPath.add(new PathSegment(p1[0], p1[1], p2[0], p1[1]));
-                    graphicsPath.add(new PathSegment(p2[0], p1[1], p2[0], p2[1]));
-                    graphicsPath.add(new PathSegment(p2[0], p2[1], p1[0], p2[1]));
-                    graphicsPath.add(new PathSegment(p1[0], p2[1], p1[0], p1[1]));
+                    float x = getLength(arguments.get(0));
+                    float y = getLength(arguments.get(1));
+                    float width = getLength(arguments.get(2));
+                    float height = getLength(arguments.get(3));
+
+                    final float[] p1 = transformPosition(x, y, point1);
+                    final float[] p2 = transformPosition(x + width, y + height, point2);
+
+                    graphicsPath.addLine(p1[0], p1[1], p2[0], p1[1]);
+                    graphicsPath.addLine(p2[0], p1[1], p2[0], p2[1]);
+                    graphicsPath.addLine(p2[0], p2[1], p1[0], p2[1]);
+                    graphicsPath.addLine(p1[0], p2[1], p1[0], p1[1]);
                 }
             }
-        }
+        });
 
         //fill
-        else if (operation.equals("f") || operation.equals("F") || operation.equals("f*"))
-        {
-            renderPath(graphicsPath, false, true);
-            graphicsPath.removeAllElements();
-        }
-
+        final OperatorHandler fill = new PaintPathHandler(false, false, true, false);
+        addOperatorHandler("f", fill);
+        addOperatorHandler("F", fill);
+        addOperatorHandler("f*", new PaintPathHandler(false, false, true, true));
         //stroke
-        else if (operation.equals("S"))
-        {
-            renderPath(graphicsPath, true, false);
-            graphicsPath.removeAllElements();
-        }
-        else if (operation.equals("s"))
-        {
-            graphicsPath.add(new PathSegment(path_x, path_y, path_start_x, path_start_y));
-            renderPath(graphicsPath, true, false);
-            graphicsPath.removeAllElements();
-        }
-
+        addOperatorHandler("S", new PaintPathHandler(false, true, false, false));
+        addOperatorHandler("s", new PaintPathHandler(true, true, false, false));
         //stroke and fill
-        else if (operation.equals("B") || operation.equals("B*"))
-        {
-            renderPath(graphicsPath, true, true);
-            graphicsPath.removeAllElements();
-        }
-        else if (operation.equals("b") || operation.equals("b*"))
-        {
-            graphicsPath.add(new PathSegment(path_x, path_y, path_start_x, path_start_y));
-            renderPath(graphicsPath, true, true);
-            graphicsPath.removeAllElements();
-        }
+        addOperatorHandler("B", new PaintPathHandler(false, true, true, false));
+        addOperatorHandler("B*", new PaintPathHandler(false, true, true, true));
+        addOperatorHandler("b", new PaintPathHandler(true, true, true, false));
+        addOperatorHandler("b*", new PaintPathHandler(true, true, true, true));
 
         //cancel path
-        else if (operation.equals("n"))
-        {
-            graphicsPath.removeAllElements();
-        }
+        addOperatorHandler("n", new OperatorHandler() {
+            public void process(Operator operator, List<COSBase> arguments)
+            {
+                graphicsPath.clear();
+            }
+        });
 
         //invoke named object - images
-        else if (operation.equals("Do"))
-        {
-            if (!disableImages)
-                processImageOperation(arguments);
-        }
-
-        super.processOperator(operator, arguments);
+        addOperatorHandler("Do", new OperatorHandler() {
+            public void process(Operator operator, List<COSBase> arguments) throws IOException
+            {
+                if (!disableImages)
+                    processImageOperation(arguments);
+            }
+        });
     }
 
     protected void processImageOperation(List<COSBase> arguments) throws IOException
@@ -548,45 +743,194 @@ public abstract class PDFBoxTree extends PDFTextStripper
         if (xobject instanceof PDImageXObject)
         {
             PDImageXObject pdfImage = (PDImageXObject) xobject;
-            BufferedImage outputImage = pdfImage.getImage();
-            outputImage = rotateImage(outputImage);
+            // the position is computed from the declared image size, the image is only decoded once
+            AffineTransform imageTransform = createImageTransformation(pdfImage);
+            // the size of the unrotated image box
+            final float boxWidth = (float) (Math.hypot(imageTransform.getScaleX(), imageTransform.getShearY()) * pdfImage.getWidth());
+            final float boxHeight = (float) (Math.hypot(imageTransform.getShearX(), imageTransform.getScaleY()) * pdfImage.getHeight());
+            final float x, y, width, height, cssRotation;
+            final boolean mirrored;
+            final double rotation;
+            if (config.isRotateImagePixels())
+            {
+                // the bounding box of the rotated image; the image pixels are rotated
+                Rectangle2D bounds = imageTransform.createTransformedShape(
+                        new Rectangle2D.Double(0, 0, pdfImage.getWidth(), pdfImage.getHeight())).getBounds2D();
+                x = (float) bounds.getX();
+                y = (float) bounds.getY();
+                width = (float) bounds.getWidth();
+                height = (float) bounds.getHeight();
+                rotation = getImageRotation();
+                cssRotation = 0;
+                mirrored = false;
+            }
+            else
+            {
+                // the unrotated image box centered at the image center; rotated using CSS
+                Point2D center = imageTransform.transform(
+                        new Point2D.Double(pdfImage.getWidth() / 2.0, pdfImage.getHeight() / 2.0), null);
+                width = boxWidth;
+                height = boxHeight;
+                x = (float) center.getX() - width / 2;
+                y = (float) center.getY() - height / 2;
+                rotation = 0;
+                // the rotation of the image X axis; a negative determinant means the Y axis is mirrored
+                cssRotation = (float) Math.toDegrees(Math.atan2(imageTransform.getShearY(), imageTransform.getScaleX()));
+                mirrored = imageTransform.getDeterminant() < 0;
+            }
 
-            ImageResource imageData = new ImageResource(getTitle(), outputImage);
+            // repeated images (logos, watermarks, ...) are only decoded and encoded once
+            int subsampling = getImageSubsampling(pdfImage, boxWidth, boxHeight);
+            ImageKey key = new ImageKey(pdfImage.getCOSObject(), rotation, subsampling);
+            ImageResource imageData = imageCache.get(key);
+            if (imageData == null)
+            {
+                imageData = createImageResource(pdfImage, rotation, subsampling);
+                imageCache.put(key, imageData);
+                imageSources.put(imageData, null);
+            }
+            else
+                reusedImages.add(imageData);
+
+            renderImage(x, y, width, height, cssRotation, mirrored, imageData);
+        }
+    }
 
-            Rectangle2D bounds = calculateImagePosition(pdfImage);
-            float x = (float) bounds.getX();
-            float y = (float) bounds.getY();
+    /**
+     * Creates an image resource representing an image XObject. The image is only decoded when
+     * the image data is requested by the image handler.
+     * @param pdfImage the source image
+     * @param rotation the rotation to be applied to the image in radians
+     * @param subsampling the subsampling factor to be used when decoding the image (1 for full resolution)
+     * @return the image resource
+     * @throws IOException
+     */
+    protected ImageResource createImageResource(PDImageXObject pdfImage, double rotation, int subsampling) throws IOException
+    {
+        if (config.isJpegPassthrough() && rotation == 0 && subsampling == 1 && isBrowserCompatibleJpeg(pdfImage))
+            return new JpegImageResource(getTitle(), pdfImage);
+        else
+            return new XObjectImageResource(getTitle(), pdfImage, rotation, subsampling);
+    }
 
-            renderImage(x, y, (float) bounds.getWidth(), (float) bounds.getHeight(), imageData);
+    /**
+     * Computes the subsampling factor for an image so that the image resolution does not exceed
+     * the target resolution configured by {@link PDFDomTreeConfig#setImageDpi(float)}.
+     * @param pdfImage the image
+     * @param boxWidth the width of the image box in the page
+     * @param boxHeight the height of the image box in the page
+     * @return the subsampling factor (1 for full resolution)
+     */
+    protected int getImageSubsampling(PDImageXObject pdfImage, float boxWidth, float boxHeight)
+    {
+        final float dpi = config.getImageDpi();
+        if (dpi > 0 && boxWidth > 0 && boxHeight > 0)
+        {
+            // 72 points per inch
+            final double xratio = pdfImage.getWidth() / (boxWidth * dpi / 72.0);
+            final double yratio = pdfImage.getHeight() / (boxHeight * dpi / 72.0);
+            return Math.max(1, (int) Math.min(xratio, yratio));
         }
+        else
+            return 1;
     }
 
-    private BufferedImage rotateImage(BufferedImage outputImage)
+    /**
+     * Checks whether the image stream contains JPEG data that may be used in the HTML output directly.
+     * @param pdfImage the image to check
+     * @return <code>true</code> when the stream data may be used without conversion
+     * @throws IOException
+     */
+    protected boolean isBrowserCompatibleJpeg(PDImageXObject pdfImage) throws IOException
+    {
+        List<COSName> filters = pdfImage.getStream().getFilters();
+        if (filters == null || filters.size() != 1 || !COSName.DCT_DECODE.equals(filters.get(0)))
+            return false;
+        COSStream stream = pdfImage.getCOSObject();
+        if (pdfImage.isStencil() || stream.containsKey(COSName.MASK) || stream.containsKey(COSName.SMASK)
+                || stream.containsKey(COSName.DECODE))
+            return false;
+        PDColorSpace cs = pdfImage.getColorSpace();
+        return cs instanceof PDDeviceRGB || cs instanceof PDDeviceGray;
+    }
+
+    private double getImageRotation()
     {
         // x, y and size are handled by css attributes but still need to rotate the image so pulling
         // only rotation out of the matrix so no giant whitespace offset from translations
         Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
 
         AffineTransform tr = ctm.createAffineTransform();
-        double rotate = Math.atan2(tr.getShearY(), tr.getScaleY()) - Math.toRadians(pdpage.getRotation());
-        outputImage = ImageUtils.rotateImage(outputImage, rotate);
+        return Math.atan2(tr.getShearY(), tr.getScaleY()) - Math.toRadians(pdpage.getRotation());
+    }
 
-        return outputImage;
+    /**
+     * Obtains the image source (URL) of an image resource using the configured image handler.
+     * For the images cached in the current document, the produced source is kept until the end
+     * of the page. The sources of the images repeated in the document are kept for the whole
+     * document up to {@link #MAX_REUSED_IMAGE_SOURCES_LENGTH} characters in total.
+     * @param resource the image resource
+     * @return the image source as returned by the image handler
+     * @throws IOException
+     */
+    protected String getImageSource(ImageResource resource) throws IOException
+    {
+        String src = reusedImageSources.get(resource);
+        if (src == null)
+        {
+            src = imageSources.get(resource);
+            if (src == null)
+            {
+                src = config.getImageHandler().handleResource(resource);
+                if (imageSources.containsKey(resource))
+                    imageSources.put(resource, src);
+            }
+            if (reusedImages.contains(resource))
+            {
+                imageSources.remove(resource);
+                addReusedImageSource(resource, src);
+            }
+        }
+        return src;
     }
 
-    private Rectangle2D calculateImagePosition(PDImageXObject pdfImage) throws IOException
+    /**
+     * Keeps the source of a repeated image. The least recently used sources are discarded
+     * when the total length exceeds {@link #MAX_REUSED_IMAGE_SOURCES_LENGTH}.
+     * @param resource the image resource
+     * @param src the image source
+     */
+    private void addReusedImageSource(ImageResource resource, String src)
+    {
+        if (src == null || src.length() > MAX_REUSED_IMAGE_SOURCES_LENGTH)
+            return;
+        reusedImageSources.put(resource, src);
+        reusedImageSourcesLength += src.length();
+        Iterator<String> it = reusedImageSources.values().iterator();
+        while (reusedImageSourcesLength > MAX_REUSED_IMAGE_SOURCES_LENGTH)
+        {
+            reusedImageSourcesLength -= it.next().length();
+            it.remove();
+        }
+    }
+
+    /**
+     * Creates the transformation of the image pixel coordinates to the page coordinates.
+     * @param pdfImage the image
+     * @return the transformation
+     */
+    protected AffineTransform createImageTransformation(PDImageXObject pdfImage)
     {
         Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
-        Rectangle2D imageBounds = pdfImage.getImage().getRaster().getBounds();
 
         AffineTransform imageTransform = new AffineTransform(ctm.createAffineTransform());
         imageTransform.scale(1.0 / pdfImage.getWidth(), -1.0 / pdfImage.getHeight());
         imageTransform.translate(0, -pdfImage.getHeight());
 
-        AffineTransform pageTransform = createCurrentPageTransformation();
-        pageTransform.concatenate(imageTransform);
+        AffineTransform ret = new AffineTransform(getPageTransformation());
+        ret.concatenate(imageTransform);
 
-        return pageTransform.createTransformedShape(imageBounds).getBounds2D();
+        return ret;
     }
 
     @Override
@@ -633,7 +977,8 @@ public abstract class PDFBoxTree extends PDFTextStripper
                                 || isReversed(getTextDirectionality(text)) != isReversed(getTextDirectionality(lastText));
             //if the style changed, we should split the boxes
             updateStyle(style, text);
-            if (!style.equals(curstyle))
+            final boolean styleChanged = !style.equals(curstyle);
+            if (styleChanged)
             	split = true;
 
             if (split) //start of a new box
@@ -643,14 +988,16 @@ public abstract class PDFBoxTree extends PDFTextStripper
             	{
             		finishBox();
             	}
-                //start a new box
-	            curstyle = new BoxStyle(style);
+                //start a new box; the current style may be kept when only the position changed
+                if (styleChanged)
+                    curstyle = new BoxStyle(style);
             }
             textLine.append(text.getUnicode());
+            TextMetrics.FontMetrics fontMetrics = getFontMetrics(text.getFont());
             if (textMetrics == null)
-                textMetrics = new TextMetrics(text);
+                textMetrics = new TextMetrics(text, fontMetrics);
             else
-                textMetrics.append(text);
+                textMetrics.append(text, fontMetrics);
             lastText = text;
         }
     }
@@ -668,10 +1015,6 @@ public abstract class PDFBoxTree extends PDFTextStripper
             else
                 s = textLine.toString();
 
-            curstyle.setLeft(textMetrics.getX());
-            curstyle.setTop(textMetrics.getTop());
-            curstyle.setLineHeight(textMetrics.getHeight());
-
 	        renderText(s, textMetrics);
 	        textLine = new StringBuilder();
 	        textMetrics = null;
@@ -705,58 +1048,95 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected void updateStyle(BoxStyle bstyle, TextPosition text)
     {
-        String font = text.getFont().getName();
-        String family = null;
-        String weight = null;
-        String fstyle = null;
-
         bstyle.setFontSize(text.getXScale()); //this seems to give better results than getFontSizeInPt()
         bstyle.setLineHeight(text.getHeight());
 
+        FontStyle fstyle = getFontStyle(text.getFont());
+        if (fstyle.fontName != null)
+        {
+            bstyle.setFontWeight(fstyle.weight);
+            bstyle.setFontStyle(fstyle.style);
+
+            //font family
+            String family = fstyle.family;
+            if (family == null)
+            {
+                family = fontTable.useFont(text.getFont());
+                if (family != null)
+                    fstyle.family = family; //the embedded font is available, no need to check again
+                else
+                    family = fstyle.fontName;
+            }
+            bstyle.setFontFamily(family);
+        }
+
+        updateStyleForRenderingMode();
+    }
+
+    /**
+     * Obtains the style properties derived from a font. The properties are computed once for each
+     * font in the document.
+     * @param font the font
+     * @return the font style properties
+     */
+    protected FontStyle getFontStyle(PDFont font)
+    {
+        FontStyle ret = fontStyles.get(font.getCOSObject());
+        if (ret == null)
+        {
+            ret = createFontStyle(font.getName());
+            fontStyles.put(font.getCOSObject(), ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Obtains the metrics of a font. The metrics are obtained once for each font in the document.
+     * @param font the font
+     * @return the font metrics
+     */
+    protected TextMetrics.FontMetrics getFontMetrics(PDFont font)
+    {
+        TextMetrics.FontMetrics ret = fontMetrics.get(font.getCOSObject());
+        if (ret == null)
+        {
+            ret = new TextMetrics.FontMetrics(font);
+            fontMetrics.put(font.getCOSObject(), ret);
+        }
+        return ret;
+    }
+
+    private FontStyle createFontStyle(String font)
+    {
+        FontStyle ret = new FontStyle(font);
         if (font != null)
         {
-        	//font style and weight
+            String lcfont = font.toLowerCase();
+            //font style and weight
+            ret.weight = cssFontWeight[0];
+            ret.style = cssFontStyle[0];
             for (int i = 0; i < pdFontType.length; i++)
             {
-                if (font.toLowerCase().lastIndexOf(pdFontType[i]) >= 0)
+                if (lcfont.lastIndexOf(pdFontType[i]) >= 0)
                 {
-                    weight = cssFontWeight[i];
-                    fstyle = cssFontStyle[i];
+                    ret.weight = cssFontWeight[i];
+                    ret.style = cssFontStyle[i];
                     break;
                 }
             }
-            if (weight != null)
-            	bstyle.setFontWeight(weight);
-            else
-            	bstyle.setFontWeight(cssFontWeight[0]);
-            if (fstyle != null)
-            	bstyle.setFontStyle(fstyle);
-            else
-            	bstyle.setFontStyle(cssFontStyle[0]);
-
             //font family
             //If it's a known common font don't embed in html output to save space
-            String knownFontFamily = findKnownFontFamily(font);
+            String knownFontFamily = findKnownFontFamily(lcfont);
             if (!knownFontFamily.equals(""))
-                family = knownFontFamily;
-            else
-            {
-                family = fontTable.getUsedName(text.getFont());
-                if (family == null)
-                    family = font;
-            }
-
-            if (family != null)
-            	bstyle.setFontFamily(family);
+                ret.family = knownFontFamily;
         }
-
-        updateStyleForRenderingMode();
+        return ret;
     }
 
-    private String findKnownFontFamily(String font) {
+    private String findKnownFontFamily(String lcfont) {
         for (String fontFamilyOn : cssFontFamily)
         {
-            if (font.toLowerCase().lastIndexOf(fontFamilyOn.toLowerCase().replaceAll("\\s+","")) >= 0)
+            if (lcfont.lastIndexOf(fontFamilyOn.toLowerCase().replaceAll("\\s+","")) >= 0)
                 return fontFamilyOn;
         }
 
@@ -821,13 +1201,45 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected float[] transformPosition(float x, float y)
     {
-        Point2D.Float point = super.transformedPoint(x, y);
-        AffineTransform pageTransform = createCurrentPageTransformation();
-        Point2D.Float transformedPoint = (Point2D.Float) pageTransform.transform(point, null);
+        return transformPosition(x, y, new float[2]);
+    }
 
-        return new float[]{(float) transformedPoint.getX(), (float) transformedPoint.getY()};
+    /**
+     * Transforms a position according to the current transformation matrix and current page transformation.
+     * @param x
+     * @param y
+     * @param out the array to store the resulting X and Y coordinates to
+     * @return the {@code out} array
+     */
+    protected float[] transformPosition(float x, float y, float[] out)
+    {
+        final Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+        out[0] = (float) ((double) ctm.getScaleX() * x + (double) ctm.getShearX() * y + ctm.getTranslateX());
+        out[1] = (float) ((double) ctm.getShearY() * x + (double) ctm.getScaleY() * y + ctm.getTranslateY());
+        getPageTransformation().transform(out, 0, out, 0, 1);
+        return out;
     }
 
+    /**
+     * Obtains the transformation of the current page coordinates to the output coordinates. The
+     * transformation is created once for each page and it is shared; it must not be modified.
+     * @return the page transformation
+     */
+    protected AffineTransform getPageTransformation()
+    {
+        if (pageTransform == null || pageTransformPage != pdpage)
+        {
+            pageTransform = createCurrentPageTransformation();
+            pageTransformPage = pdpage;
+        }
+        return pageTransform;
+    }
+
+    /**
+     * Creates a new transformation of the current page coordinates to the output coordinates
+     * based on the page crop box and rotation.
+     * @return the page transformation
+     */
     protected AffineTransform createCurrentPageTransformation()
     {
         PDRectangle cb = pdpage.getCropBox();
@@ -914,7 +1326,17 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected String colorString(int ir, int ig, int ib)
     {
-    	return String.format("#%02x%02x%02x", ir, ig, ib);
+        if ((ir | ig | ib) >= 0 && ir <= 255 && ig <= 255 && ib <= 255)
+        {
+            final char[] ret = new char[7];
+            ret[0] = '#';
+            ret[1] = HEX_DIGITS[ir >> 4]; ret[2] = HEX_DIGITS[ir & 0x0f];
+            ret[3] = HEX_DIGITS[ig >> 4]; ret[4] = HEX_DIGITS[ig & 0x0f];
+            ret[5] = HEX_DIGITS[ib >> 4]; ret[6] = HEX_DIGITS[ib & 0x0f];
+            return new String(ret);
+        }
+        else
+            return String.format("#%02x%02x%02x", ir, ig, ib);
     }
 
     /**
@@ -936,11 +1358,25 @@ public abstract class PDFBoxTree extends PDFTextStripper
      */
     protected String colorString(PDColor pdcolor)
     {
+        //pattern colors are not cached, their components do not identify the color
+        final ColorKey key = (pdcolor.getPatternName() == null) ? new ColorKey(pdcolor) : null;
+        if (key != null)
+        {
+            String color = colorCache.get(key);
+            if (color != null)
+                return color;
+        }
         String color = null;
         try
         {
             float[] rgb = pdcolor.getColorSpace().toRGB(pdcolor.getComponents());
             color = colorString(rgb[0], rgb[1], rgb[2]);
+            if (key != null)
+            {
+                if (colorCache.size() >= MAX_CACHED_COLORS)
+                    colorCache.clear();
+                colorCache.put(key, color);
+            }
         } catch (IOException e) {
             log.error("colorString: IOException: {}", e.getMessage());
         } catch (UnsupportedOperationException e) {
@@ -949,6 +1385,344 @@ public abstract class PDFBoxTree extends PDFTextStripper
         return color;
     }
 
+    //===========================================================================================
+
+    /**
+     * Creates the CSS style of the element representing the current page.
+     * @return the style string
+     */
+    protected String createPageStyle()
+    {
+        String pstyle = "";
+        float[] size = getCurrentPageSize();
+        if (size != null)
+        {
+            pstyle = "width:" + size[0] + UNIT + ";" + "height:" + size[1] + UNIT + ";";
+            pstyle += "overflow:hidden;";
+        }
+        else
+            log.warn("No media box found");
+        return pstyle;
+    }
+
+    /**
+     * Obtains the size of the current page in the output including the page rotation.
+     * @return the width and height of the page or {@code null} when no media box is available
+     */
+    protected float[] getCurrentPageSize()
+    {
+        PDRectangle layout = getCurrentMediaBox();
+        if (layout != null)
+        {
+            float w = layout.getWidth();
+            float h = layout.getHeight();
+            final int rot = pdpage.getRotation();
+            if (rot == 90 || rot == 270)
+            {
+                float x = w; w = h; h = x;
+            }
+            return new float[]{w, h};
+        }
+        else
+            return null;
+    }
+
+    /**
+     * Creates the CSS style of the SVG layer containing the vector paths of the current page.
+     * The layer covers the whole page and it is placed below the other page contents. The negative
+     * z-index keeps the layer within the page because the page forms a stacking context
+     * (see {@link #defaultStyle}).
+     * @return the style string
+     */
+    protected String createPathLayerStyle()
+    {
+        StringBuilder pstyle = new StringBuilder(100);
+        pstyle.append("position:absolute;left:0;top:0;");
+        float[] size = getCurrentPageSize();
+        if (size != null)
+        {
+            pstyle.append("width:").append(size[0]).append(UNIT).append(';');
+            pstyle.append("height:").append(size[1]).append(UNIT).append(';');
+        }
+        pstyle.append("overflow:visible;z-index:-1;");
+        return pstyle.toString();
+    }
+
+    /**
+     * Creates the value of the viewBox attribute of the SVG layer of the current page. The SVG
+     * user units correspond to the CSS length units used in the output.
+     * @return the viewBox attribute value or {@code null} when the page size is not known
+     */
+    protected String createPathLayerViewBox()
+    {
+        float[] size = getCurrentPageSize();
+        if (size != null)
+            return "0 0 " + size[0] + " " + size[1];
+        else
+            return null;
+    }
+
+    /**
+     * Creates the SVG path data of a path.
+     * @param path the path
+     * @return the value of the d attribute of the SVG path element
+     */
+    protected String createPathData(PathBuffer path)
+    {
+        StringBuilder ret = new StringBuilder(path.size() * 24);
+        for (int i = 0; i < path.size(); i++)
+        {
+            final float x1 = path.getX1(i);
+            final float y1 = path.getY1(i);
+            //start a new subpath when the segment is not connected to the previous one
+            if (i == 0 || x1 != path.getX2(i - 1) || y1 != path.getY2(i - 1))
+                ret.append('M').append(x1).append(' ').append(y1);
+            if (path.getKind(i) == PathBuffer.CLOSE)
+                ret.append('Z');
+            else
+                ret.append('L').append(path.getX2(i)).append(' ').append(path.getY2(i));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Creates the value of the fill attribute of an SVG path.
+     * @param fill should the path be filled?
+     * @return the fill color or <code>none</code>
+     */
+    protected String createPathFill(boolean fill)
+    {
+        String color = fill ? colorString(getGraphicsState().getNonStrokingColor()) : null;
+        return (color != null) ? color : "none";
+    }
+
+    /**
+     * Creates the value of the stroke attribute of an SVG path.
+     * @param stroke should there be a stroke?
+     * @return the stroke color or <code>none</code>
+     */
+    protected String createPathStroke(boolean stroke)
+    {
+        String color = stroke ? colorString(getGraphicsState().getStrokingColor()) : null;
+        return (color != null) ? color : "none";
+    }
+
+    /**
+     * Obtains the current line width in the output units.
+     * @return the line width
+     */
+    protected float getPathStrokeWidth()
+    {
+        return transformWidth(getGraphicsState().getLineWidth());
+    }
+
+    /**
+     * Creates the CSS style of a text box based on the current style ({@link PDFBoxTree#curstyle})
+     * and the metrics of the text being finished ({@link PDFBoxTree#textMetrics}).
+     * @param width the text box width
+     * @return the style string
+     */
+    protected String createTextStyle(float width)
+    {
+        String style;
+        if (config.isStyleClasses())
+            style = curstyle.toPositionString(textMetrics.getTop(), textMetrics.getX(), textMetrics.getHeight());
+        else
+            style = curstyle.toString(textMetrics.getTop(), textMetrics.getX(), textMetrics.getHeight());
+        style += "width:" + width + UNIT + ";";
+        return style;
+    }
+
+    /**
+     * Creates the value of the class attribute of a text box based on the current style
+     * ({@link PDFBoxTree#curstyle}). When the style classes are enabled in the configuration,
+     * the class representing the current style is included.
+     * @return the class attribute value
+     */
+    protected String createTextClass()
+    {
+        if (config.isStyleClasses())
+            return "p " + getStyleClass(curstyle);
+        else
+            return "p";
+    }
+
+    /**
+     * Obtains the name of the CSS class representing the given text style in the current document.
+     * A new class is created when the style has not been used yet.
+     * @param bstyle the text style
+     * @return the class name
+     */
+    protected String getStyleClass(BoxStyle bstyle)
+    {
+        String ret = styleClasses.get(bstyle);
+        if (ret == null)
+        {
+            ret = "s" + styleClasses.size();
+            //the key is a private copy, the given style may be modified later
+            styleClasses.put(new BoxStyle(bstyle), ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Creates the CSS definition of a style class.
+     * @param ret the string builder to append the definition to
+     * @param className the class name
+     * @param bstyle the text style represented by the class
+     */
+    protected void createStyleClass(StringBuilder ret, String className, BoxStyle bstyle)
+    {
+        ret.append('.').append(className).append('{').append(bstyle.getFontCss()).append("}\n");
+    }
+
+    /**
+     * Creates the CSS style of a rectangle drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the rectangle
+     * @param y the Y coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param stroke should there be a stroke around?
+     * @param fill should the rectangle be filled?
+     * @return the style string
+     */
+    protected String createRectangleStyle(float x, float y, float width, float height, boolean stroke, boolean fill)
+    {
+        float lineWidth = transformWidth(getGraphicsState().getLineWidth());
+        float wcor = stroke ? lineWidth : 0.0f;
+        float strokeOffset = wcor == 0 ? 0 : wcor / 2;
+        width = width - wcor < 0 ? 1 : width - wcor;
+        height = height - wcor < 0 ? 1 : height - wcor;
+
+        StringBuilder pstyle = new StringBuilder(50);
+        pstyle.append("left:").append(style.formatLength(x - strokeOffset)).append(';');
+        pstyle.append("top:").append(style.formatLength(y - strokeOffset)).append(';');
+        pstyle.append("width:").append(style.formatLength(width)).append(';');
+        pstyle.append("height:").append(style.formatLength(height)).append(';');
+
+        if (stroke)
+        {
+            String color = colorString(getGraphicsState().getStrokingColor());
+            pstyle.append("border:").append(style.formatLength(lineWidth)).append(" solid ").append(color).append(';');
+        }
+
+        if (fill)
+        {
+            String fcolor = colorString(getGraphicsState().getNonStrokingColor());
+            pstyle.append("background-color:").append(fcolor).append(';');
+        }
+        return pstyle.toString();
+    }
+
+    /**
+     * Creates the CSS style of a line drawn between the specified points.
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @return the style string
+     */
+    protected String createLineStyle(float x1, float y1, float x2, float y2)
+    {
+        HtmlDivLine line = new HtmlDivLine(x1, y1, x2, y2, transformWidth(getGraphicsState().getLineWidth()));
+        String color = colorString(getGraphicsState().getStrokingColor());
+
+        StringBuilder pstyle = new StringBuilder(50);
+        pstyle.append("left:").append(style.formatLength(line.getLeft())).append(';');
+        pstyle.append("top:").append(style.formatLength(line.getTop())).append(';');
+        pstyle.append("width:").append(style.formatLength(line.getWidth())).append(';');
+        pstyle.append("height:").append(style.formatLength(line.getHeight())).append(';');
+        pstyle.append(line.getBorderSide()).append(':').append(style.formatLength(line.getLineStrokeWidth())).append(" solid ").append(color).append(';');
+        if (line.getAngleDegrees() != 0)
+            pstyle.append("transform:").append("rotate(").append(line.getAngleDegrees()).append("deg);");
+        return pstyle.toString();
+    }
+
+    /**
+     * Creates the CSS style of an image drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the image
+     * @param y the Y coordinate of the image
+     * @param width the width coordinate of the image
+     * @param height the height coordinate of the image
+     * @return the style string
+     */
+    protected String createImageStyle(float x, float y, float width, float height)
+    {
+        return createImageStyle(x, y, width, height, 0);
+    }
+
+    /**
+     * Creates the CSS style of a rotated image drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @return the style string
+     */
+    protected String createImageStyle(float x, float y, float width, float height, float rotation)
+    {
+        return createImageStyle(x, y, width, height, rotation, false);
+    }
+
+    /**
+     * Creates the CSS style of a rotated and possibly mirrored image drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @param mirrored <code>true</code> when the image box is mirrored vertically before the rotation
+     * @return the style string
+     */
+    protected String createImageStyle(float x, float y, float width, float height, float rotation, boolean mirrored)
+    {
+        StringBuilder pstyle = new StringBuilder("position:absolute;");
+        pstyle.append("left:").append(x).append(UNIT).append(';');
+        pstyle.append("top:").append(y).append(UNIT).append(';');
+        pstyle.append("width:").append(width).append(UNIT).append(';');
+        pstyle.append("height:").append(height).append(UNIT).append(';');
+        final boolean rotated = Math.abs(rotation) > 0.01f;
+        if (rotated || mirrored)
+        {
+            pstyle.append("transform:");
+            if (rotated)
+                pstyle.append("rotate(").append(rotation).append("deg)");
+            if (rotated && mirrored)
+                pstyle.append(' ');
+            if (mirrored)
+                pstyle.append("scaleY(-1)");
+            pstyle.append(';');
+        }
+        return pstyle.toString();
+    }
+
+    /**
+     * Creates a <code>@font-face</code> rule for an embedded font.
+     * @param ret the string builder the rule is appended to
+     * @param font the font table entry
+     */
+    protected void createFontFace(StringBuilder ret, FontTable.Entry font)
+    {
+        try
+        {
+            final String src = config.getFontHandler().handleResource(font);
+            if (src != null && !src.trim().isEmpty())
+            {
+                ret.append("@font-face {");
+                ret.append("font-family:\"").append(font.usedName).append("\";");
+                ret.append("src:url('");
+                ret.append(src);
+                ret.append("');");
+                ret.append("}\n");
+            }
+        } catch (IOException e)
+        {
+            log.error("Error writing font face data for font: " + font.getName()
+                    + "Exception: {} {}", e.getMessage(), e.getClass());
+        }
+    }
+
     protected String getTitle() {
         String title = document.getDocumentInformation().getTitle();
         if (title == null || title.isEmpty())
@@ -970,4 +1744,134 @@ public abstract class PDFBoxTree extends PDFTextStripper
             return Character.DIRECTIONALITY_UNDEFINED;
     }
 
+    //===========================================================================================
+
+    /**
+     * A handler of a content stream operator.
+     */
+    protected interface OperatorHandler
+    {
+        /**
+         * Processes an operator.
+         * @param operator the operator
+         * @param arguments the operator arguments
+         * @throws IOException
+         */
+        public void process(Operator operator, List<COSBase> arguments) throws IOException;
+    }
+
+    /**
+     * A handler of the path painting operators. It renders and clears the current path.
+     */
+    private class PaintPathHandler implements OperatorHandler
+    {
+        private final boolean close;
+        private final boolean stroke;
+        private final boolean fill;
+        private final boolean evenOdd;
+
+        public PaintPathHandler(boolean close, boolean stroke, boolean fill, boolean evenOdd)
+        {
+            this.close = close;
+            this.stroke = stroke;
+            this.fill = fill;
+            this.evenOdd = evenOdd;
+        }
+
+        public void process(Operator operator, List<COSBase> arguments) throws IOException
+        {
+            if (close)
+                graphicsPath.addClose(path_x, path_y, path_start_x, path_start_y);
+            renderPath(graphicsPath, stroke, fill, evenOdd);
+            graphicsPath.clear();
+        }
+    }
+
+    /**
+     * The style properties derived from a font.
+     */
+    protected static class FontStyle
+    {
+        /** The font name */
+        public final String fontName;
+        /** The CSS font weight */
+        public String weight;
+        /** The CSS font style */
+        public String style;
+        /** The font family to be used or {@code null} when the embedded font should be looked up */
+        public String family;
+
+        public FontStyle(String fontName)
+        {
+            this.fontName = fontName;
+        }
+    }
+
+    /**
+     * A key identifying a color in the color cache: the color space instance and the color components.
+     */
+    protected static class ColorKey
+    {
+        private final PDColorSpace colorSpace;
+        private final float[] components;
+        private final int hash;
+
+        public ColorKey(PDColor color)
+        {
+            this.colorSpace = color.getColorSpace();
+            this.components = color.getComponents(); //a copy is returned
+            this.hash = 31 * System.identityHashCode(colorSpace) + Arrays.hashCode(components);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof ColorKey)) return false;
+            ColorKey other = (ColorKey) obj;
+            return hash == other.hash && colorSpace == other.colorSpace
+                    && Arrays.equals(components, other.components);
+        }
+    }
+
+    /**
+     * A key identifying an image in the image cache: the image stream, the rotation and the subsampling applied.
+     */
+    protected static class ImageKey
+    {
+        private final COSStream stream;
+        private final double rotation;
+        private final int subsampling;
+
+        public ImageKey(COSStream stream, double rotation, int subsampling)
+        {
+            this.stream = stream;
+            this.rotation = rotation;
+            this.subsampling = subsampling;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long bits = Double.doubleToLongBits(rotation);
+            return 31 * (31 * System.identityHashCode(stream) + (int) (bits ^ (bits >>> 32))) + subsampling;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            ImageKey other = (ImageKey) obj;
+            return stream == other.stream && subsampling == other.subsampling
+                    && Double.doubleToLongBits(rotation) == Double.doubleToLongBits(other.rotation);
+        }
+    }
+
 }
@@ -22,15 +22,13 @@ package org.fit.pdfdom;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.fit.pdfdom.resource.IgnoreResourceHandler;
 import org.fit.pdfdom.resource.ImageResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,15 +50,6 @@ public class PDFDomTree extends PDFBoxTree
 {
     private static Logger log = LoggerFactory.getLogger(PDFDomTree.class);
 
-    /** Default style placed in the begining of the resulting document */
-    protected String defaultStyle = ".page{position:relative; border:1px solid blue;margin:0.5em}\n" +
-            ".p,.r{position:absolute;}\n" +
-            ".p{white-space:nowrap;}\n" +
-            // disable text-shadow fallback for text stroke if stroke supported by browser
-            "@supports(-webkit-text-stroke: 1px black) {" +
-                ".p{text-shadow:none !important;}" +
-            "}";
-    
     /** The resulting document representing the PDF file. */
     protected Document doc;
     /** The head element of the resulting document. */
@@ -73,13 +62,16 @@ public class PDFDomTree extends PDFBoxTree
     protected Element globalStyle;
     /** The element representing the page currently being created in the resulting document. */
     protected Element curpage;
+    /** The SVG layer of the current page containing the vector paths (created when first used). */
+    protected Element curPathLayer;
     
     /** Text element counter for assigning IDs to the text elements. */
     protected int textcnt;
     /** Page counter for assigning IDs to the pages. */
     protected int pagecnt;
 
-    protected PDFDomTreeConfig config;
+    /** The listener notified about the finished pages (if any). */
+    protected PageListener pageListener;
 
     /**
      * Creates a new PDF DOM parser.
@@ -109,7 +101,6 @@ public class PDFDomTree extends PDFBoxTree
     {
         pagecnt = 0;
         textcnt = 0;
-        this.config = PDFDomTreeConfig.createDefaultConfig();
     }
     
     /**
@@ -142,6 +133,27 @@ public class PDFDomTree extends PDFBoxTree
         root.appendChild(body);
     }
     
+    /**
+     * Obtains the listener notified about the finished pages.
+     * @return the page listener or {@code null} when no listener is used
+     */
+    public PageListener getPageListener()
+    {
+        return pageListener;
+    }
+
+    /**
+     * Sets a listener that receives each page element as soon as the page is processed. The page
+     * elements are removed from the resulting document after being passed to the listener so that
+     * they don't remain in memory until the whole document is processed. Note that the font
+     * definitions are still created at the end of the document in the global style element.
+     * @param pageListener the listener or {@code null} for keeping all the pages in the document
+     */
+    public void setPageListener(PageListener pageListener)
+    {
+        this.pageListener = pageListener;
+    }
+
     /**
      * Obtains the resulting document tree.
      * @return The DOM root element.
@@ -155,6 +167,7 @@ public class PDFDomTree extends PDFBoxTree
     public void startDocument(PDDocument document)
             throws IOException
     {
+        super.startDocument(document);
     	try {
     		createDocument();
     	} catch (ParserConfigurationException e) {
@@ -179,6 +192,18 @@ public class PDFDomTree extends PDFBoxTree
      */
     @Override
     public void writeText(PDDocument doc, Writer outputStream) throws IOException
+    {
+        createDOM(doc);
+        writeDocument(outputStream);
+    }
+
+    /**
+     * Serializes the resulting DOM tree to an output. This requires
+     * a DOM Level 3 capable implementation to be available.
+     * @param outputStream the output to write the document to
+     * @throws IOException
+     */
+    public void writeDocument(Writer outputStream) throws IOException
     {
         try
         {
@@ -188,7 +213,6 @@ public class PDFDomTree extends PDFBoxTree
             LSOutput output = impl.createLSOutput();
             writer.getDomConfig().setParameter("format-pretty-print", true);
             output.setCharacterStream(outputStream);
-            createDOM(doc);
             writer.write(getDocument(), output);
         } catch (ClassCastException e) {
             throw new IOException("Error: cannot initialize the DOM serializer", e);
@@ -222,9 +246,21 @@ public class PDFDomTree extends PDFBoxTree
     protected void startNewPage()
     {
         curpage = createPageElement();
+        curPathLayer = null;
         body.appendChild(curpage);
     }
     
+    @Override
+    protected void finishPage() throws IOException
+    {
+        if (pageListener != null)
+        {
+            pageListener.pageFinished(getCurrentPageNo(), curpage, pdpage);
+            body.removeChild(curpage);
+            curpage = null;
+        }
+    }
+
     @Override
     protected void renderText(String data, TextMetrics metrics)
     {
@@ -232,17 +268,29 @@ public class PDFDomTree extends PDFBoxTree
     }
 
     @Override
-    protected void renderPath(List<PathSegment> path, boolean stroke, boolean fill) throws IOException
+    protected void renderPath(PathBuffer path, boolean stroke, boolean fill) throws IOException
     {
-        float[] rect = toRectangle(path);
+        renderPath(path, stroke, fill, false);
+    }
+
+    @Override
+    protected void renderPath(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd) throws IOException
+    {
+        //in the SVG mode, all the paths including rectangles are kept in the SVG layer in the painting order
+        float[] rect = config.isSvgPaths() ? null : toRectangle(path);
         if (rect != null)
         {
             curpage.appendChild(createRectangleElement(rect[0], rect[1], rect[2]-rect[0], rect[3]-rect[1], stroke, fill));
         }
+        else if (config.isSvgPaths())
+        {
+            if (!path.isEmpty())
+                getPathLayer().appendChild(createPathElement(path, stroke, fill, evenOdd));
+        }
         else if (stroke)
         {
-            for (PathSegment segm : path)
-                curpage.appendChild(createLineElement(segm.getX1(), segm.getY1(), segm.getX2(), segm.getY2()));
+            for (int i = 0; i < path.size(); i++)
+                curpage.appendChild(createLineElement(path.getX1(i), path.getY1(i), path.getX2(i), path.getY2(i)));
         }
         else {
             Element pathImage = createPathImage(path);
@@ -257,6 +305,19 @@ public class PDFDomTree extends PDFBoxTree
     	curpage.appendChild(createImageElement(x, y, width, height, resource));
     }
 
+    @Override
+    protected void renderImage(float x, float y, float width, float height, float rotation, ImageResource resource) throws IOException
+    {
+        renderImage(x, y, width, height, rotation, false, resource);
+    }
+
+    @Override
+    protected void renderImage(float x, float y, float width, float height, float rotation, boolean mirrored,
+            ImageResource resource) throws IOException
+    {
+        curpage.appendChild(createImageElement(x, y, width, height, rotation, mirrored, resource));
+    }
+
     //===========================================================================================
     
     /**
@@ -265,30 +326,7 @@ public class PDFDomTree extends PDFBoxTree
      */
     protected Element createPageElement()
     {
-        String pstyle = "";
-        PDRectangle layout = getCurrentMediaBox();
-        if (layout != null)
-        {
-            /*System.out.println("x1 " + layout.getLowerLeftX());
-            System.out.println("y1 " + layout.getLowerLeftY());
-            System.out.println("x2 " + layout.getUpperRightX());
-            System.out.println("y2 " + layout.getUpperRightY());
-            System.out.println("rot " + pdpage.findRotation());*/
-            
-            float w = layout.getWidth();
-            float h = layout.getHeight();
-            final int rot = pdpage.getRotation();
-            if (rot == 90 || rot == 270)
-            {
-                float x = w; w = h; h = x;
-            }
-            
-            pstyle = "width:" + w + UNIT + ";" + "height:" + h + UNIT + ";";
-            pstyle += "overflow:hidden;";
-        }
-        else
-            log.warn("No media box found");
-        
+        String pstyle = createPageStyle();
         Element el = doc.createElement("div");
         el.setAttribute("id", "page_" + (pagecnt++));
         el.setAttribute("class", "page");
@@ -304,10 +342,8 @@ public class PDFDomTree extends PDFBoxTree
     {
         Element el = doc.createElement("div");
         el.setAttribute("id", "p" + (textcnt++));
-        el.setAttribute("class", "p");
-        String style = curstyle.toString();
-        style += "width:" + width + UNIT + ";";
-        el.setAttribute("style", style);
+        el.setAttribute("class", createTextClass());
+        el.setAttribute("style", createTextStyle(width));
         return el;
     }
     
@@ -336,33 +372,9 @@ public class PDFDomTree extends PDFBoxTree
      */
     protected Element createRectangleElement(float x, float y, float width, float height, boolean stroke, boolean fill)
     {
-        float lineWidth = transformWidth(getGraphicsState().getLineWidth());
-    	float wcor = stroke ? lineWidth : 0.0f;
-        float strokeOffset = wcor == 0 ? 0 : wcor / 2;
-        width = width - wcor < 0 ? 1 : width - wcor;
-        height = height - wcor < 0 ? 1 : height - wcor;
-
-        StringBuilder pstyle = new StringBuilder(50);
-    	pstyle.append("left:").append(style.formatLength(x - strokeOffset)).append(';');
-        pstyle.append("top:").append(style.formatLength(y - strokeOffset)).append(';');
-        pstyle.append("width:").append(style.formatLength(width)).append(';');
-        pstyle.append("height:").append(style.formatLength(height)).append(';');
-    	    
-    	if (stroke)
-    	{
-            String color = colorString(getGraphicsState().getStrokingColor());
-        	pstyle.append("border:").append(style.formatLength(lineWidth)).append(" solid ").append(color).append(';');
-    	}
-    	
-    	if (fill)
-    	{
-            String fcolor = colorString(getGraphicsState().getNonStrokingColor());
-    	    pstyle.append("background-color:").append(fcolor).append(';');
-    	}
-    	
         Element el = doc.createElement("div");
         el.setAttribute("class", "r");
-        el.setAttribute("style", pstyle.toString());
+        el.setAttribute("style", createRectangleStyle(x, y, width, height, stroke, fill));
         el.appendChild(doc.createEntityReference("nbsp"));
         return el;
     }
@@ -377,26 +389,65 @@ public class PDFDomTree extends PDFBoxTree
      */
     protected Element createLineElement(float x1, float y1, float x2, float y2)
     {
-        HtmlDivLine line = new HtmlDivLine(x1, y1, x2, y2, transformWidth(getGraphicsState().getLineWidth()));
-        String color = colorString(getGraphicsState().getStrokingColor());
-
-        StringBuilder pstyle = new StringBuilder(50);
-        pstyle.append("left:").append(style.formatLength(line.getLeft())).append(';');
-        pstyle.append("top:").append(style.formatLength(line.getTop())).append(';');
-        pstyle.append("width:").append(style.formatLength(line.getWidth())).append(';');
-        pstyle.append("height:").append(style.formatLength(line.getHeight())).append(';');
-        pstyle.append(line.getBorderSide()).append(':').append(style.formatLength(line.getLineStrokeWidth())).append(" solid ").append(color).append(';');
-        if (line.getAngleDegrees() != 0)
-            pstyle.append("transform:").append("rotate(").append(line.getAngleDegrees()).append("deg);");
-
         Element el = doc.createElement("div");
         el.setAttribute("class", "r");
-        el.setAttribute("style", pstyle.toString());
+        el.setAttribute("style", createLineStyle(x1, y1, x2, y2));
         el.appendChild(doc.createEntityReference("nbsp"));
         return el;
     }
 
-    protected Element createPathImage(List<PathSegment> path) throws IOException
+    /**
+     * Obtains the SVG layer of the current page. The layer is created and inserted as the first
+     * child of the page when it is used for the first time.
+     * @return the SVG element
+     */
+    protected Element getPathLayer()
+    {
+        if (curPathLayer == null)
+        {
+            curPathLayer = createPathLayerElement();
+            curpage.insertBefore(curPathLayer, curpage.getFirstChild());
+        }
+        return curPathLayer;
+    }
+
+    /**
+     * Creates an SVG element used as a layer for the vector paths of the current page.
+     * @return the resulting DOM element
+     */
+    protected Element createPathLayerElement()
+    {
+        Element el = doc.createElement("svg");
+        el.setAttribute("xmlns", SVG_NS);
+        String viewBox = createPathLayerViewBox();
+        if (viewBox != null)
+            el.setAttribute("viewBox", viewBox);
+        el.setAttribute("style", createPathLayerStyle());
+        return el;
+    }
+
+    /**
+     * Creates an SVG path element that represents a path drawn in the page.
+     * @param path the path
+     * @param stroke should there be a stroke around?
+     * @param fill should the path be filled?
+     * @param evenOdd should the even-odd fill rule be used?
+     * @return the resulting DOM element
+     */
+    protected Element createPathElement(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd)
+    {
+        Element el = doc.createElement("path");
+        el.setAttribute("d", createPathData(path));
+        el.setAttribute("fill", createPathFill(fill));
+        if (fill && evenOdd)
+            el.setAttribute("fill-rule", "evenodd");
+        el.setAttribute("stroke", createPathStroke(stroke));
+        if (stroke)
+            el.setAttribute("stroke-width", String.valueOf(getPathStrokeWidth()));
+        return el;
+    }
+
+    protected Element createPathImage(PathBuffer path) throws IOException
     {
         PathDrawer drawer = new PathDrawer(getGraphicsState());
         ImageResource renderedPath = drawer.drawPath(path);
@@ -420,23 +471,45 @@ public class PDFDomTree extends PDFBoxTree
      */
     protected Element createImageElement(float x, float y, float width, float height, ImageResource resource) throws IOException
     {
-        StringBuilder pstyle = new StringBuilder("position:absolute;");
-        pstyle.append("left:").append(x).append(UNIT).append(';');
-        pstyle.append("top:").append(y).append(UNIT).append(';');
-        pstyle.append("width:").append(width).append(UNIT).append(';');
-        pstyle.append("height:").append(height).append(UNIT).append(';');
-        //pstyle.append("border:1px solid red;");
-        
+        return createImageElement(x, y, width, height, 0, resource);
+    }
+
+    /**
+     * Creates an element that represents a rotated image drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @param resource the image data
+     * @return the resulting DOM element
+     */
+    protected Element createImageElement(float x, float y, float width, float height, float rotation, ImageResource resource) throws IOException
+    {
+        return createImageElement(x, y, width, height, rotation, false, resource);
+    }
+
+    /**
+     * Creates an element that represents a rotated and possibly mirrored image drawn at the specified coordinates in the page.
+     * @param x the X coordinate of the unrotated image box
+     * @param y the Y coordinate of the unrotated image box
+     * @param width the width of the unrotated image box
+     * @param height the height of the unrotated image box
+     * @param rotation the clockwise rotation of the image box in degrees
+     * @param mirrored <code>true</code> when the image box is mirrored vertically before the rotation
+     * @param resource the image data
+     * @return the resulting DOM element
+     */
+    protected Element createImageElement(float x, float y, float width, float height, float rotation, boolean mirrored,
+            ImageResource resource) throws IOException
+    {
         Element el = doc.createElement("img");
-        el.setAttribute("style", pstyle.toString());
+        el.setAttribute("style", createImageStyle(x, y, width, height, rotation, mirrored));
 
-        String imgSrc = config.getImageHandler().handleResource(resource);
+        //the image handler (and the image decoding) is skipped when the data is not used
+        String imgSrc = disableImageData ? "" : getImageSource(resource);
+        el.setAttribute("src", imgSrc);
 
-        if (!disableImageData && !imgSrc.isEmpty())
-            el.setAttribute("src", imgSrc);
-        else
-            el.setAttribute("src", "");
-        
         return el;
     }
 
@@ -450,44 +523,26 @@ public class PDFDomTree extends PDFBoxTree
         ret.append(createFontFaces());
         ret.append("\n");
         ret.append(defaultStyle);
+        if (!styleClasses.isEmpty())
+            ret.append("\n").append(createStyleClasses());
         return ret.toString();
     }
 
-    @Override
-    protected void updateFontTable()
+    protected String createStyleClasses()
     {
-        // skip font processing completley if ignore fonts mode to optimize processing speed
-        if (!(config.getFontHandler() instanceof IgnoreResourceHandler))
-            super.updateFontTable();
+        StringBuilder ret = new StringBuilder();
+        for (Map.Entry<BoxStyle, String> entry : styleClasses.entrySet())
+            createStyleClass(ret, entry.getValue(), entry.getKey());
+
+        return ret.toString();
     }
 
     protected String createFontFaces()
     {
         StringBuilder ret = new StringBuilder();
-        for (FontTable.Entry font : fontTable.getEntries())
+        for (FontTable.Entry font : fontTable.getUsedEntries())
             createFontFace(ret, font);
 
         return ret.toString();
     }
-
-    private void createFontFace(StringBuilder ret, FontTable.Entry font)
-    {
-        try
-        {
-            final String src = config.getFontHandler().handleResource(font);
-            if (src != null && !src.trim().isEmpty()) 
-            {
-                ret.append("@font-face {");
-                ret.append("font-family:\"").append(font.usedName).append("\";");
-                ret.append("src:url('");
-                ret.append(src);
-                ret.append("');");
-                ret.append("}\n");
-            }
-        } catch (IOException e)
-        {
-            log.error("Error writing font face data for font: " + font.getName()
-                    + "Exception: {} {}", e.getMessage(), e.getClass());
-        }
-    }
 }
@@ -18,6 +18,7 @@
 package org.fit.pdfdom;
 
 import org.fit.pdfdom.resource.EmbedAsBase64Handler;
+import org.fit.pdfdom.resource.FontCache;
 import org.fit.pdfdom.resource.HtmlResourceHandler;
 import org.fit.pdfdom.resource.IgnoreResourceHandler;
 import org.fit.pdfdom.resource.SaveResourceToDirHandler;
@@ -28,6 +29,12 @@ public class PDFDomTreeConfig
 {
     private HtmlResourceHandler imageHandler;
     private HtmlResourceHandler fontHandler;
+    private boolean jpegPassthrough;
+    private boolean rotateImagePixels;
+    private float imageDpi;
+    private FontCache fontCache;
+    private boolean styleClasses;
+    private boolean svgPaths;
 
     public static PDFDomTreeConfig createDefaultConfig() {
         PDFDomTreeConfig config = new PDFDomTreeConfig();
@@ -71,4 +78,99 @@ public class PDFDomTreeConfig
     {
         this.fontHandler = fontHandler;
     }
+
+    public boolean isJpegPassthrough()
+    {
+        return jpegPassthrough;
+    }
+
+    /**
+     * Enables passing the JPEG (DCT) encoded images to the image handler without decoding.
+     * The original JPEG data is used for the images that need no conversion (device RGB or
+     * gray colour space, no masks, no decode array and no pixel rotation). The other images are
+     * converted to PNG as usual.
+     * @param jpegPassthrough <code>true</code> to use the original JPEG data when possible
+     */
+    public void setJpegPassthrough(boolean jpegPassthrough)
+    {
+        this.jpegPassthrough = jpegPassthrough;
+    }
+
+    public boolean isRotateImagePixels()
+    {
+        return rotateImagePixels;
+    }
+
+    /**
+     * Switches between the two ways of rendering the rotated images. By default, the images are
+     * stored unrotated and rotated using the CSS <code>transform</code> property. When the pixel
+     * rotation is enabled, the image data is rotated instead and the image is placed to the bounding
+     * box of the rotated image.
+     * @param rotateImagePixels <code>true</code> for rotating the image data
+     */
+    public void setRotateImagePixels(boolean rotateImagePixels)
+    {
+        this.rotateImagePixels = rotateImagePixels;
+    }
+
+    public float getImageDpi()
+    {
+        return imageDpi;
+    }
+
+    /**
+     * Sets the maximal resolution of the images in the output. The images whose resolution
+     * at their displayed size exceeds the given value are decoded with a reduced resolution.
+     * @param imageDpi the target resolution in dots per inch or 0 for keeping the original resolution
+     */
+    public void setImageDpi(float imageDpi)
+    {
+        this.imageDpi = imageDpi;
+    }
+
+    public FontCache getFontCache()
+    {
+        return fontCache;
+    }
+
+    /**
+     * Sets the cache of the converted fonts. The same cache may be used by multiple parsers
+     * in order to avoid converting the same fonts repeatedly.
+     * @param fontCache the font cache or {@code null} for no caching (default)
+     */
+    public void setFontCache(FontCache fontCache)
+    {
+        this.fontCache = fontCache;
+    }
+
+    public boolean isStyleClasses()
+    {
+        return styleClasses;
+    }
+
+    /**
+     * Enables collecting the distinct text styles to CSS classes defined in the document style sheet.
+     * Only the position and width of the text boxes are then specified in their inline styles.
+     * @param styleClasses <code>true</code> to generate the style classes
+     */
+    public void setStyleClasses(boolean styleClasses)
+    {
+        this.styleClasses = styleClasses;
+    }
+
+    public boolean isSvgPaths()
+    {
+        return svgPaths;
+    }
+
+    /**
+     * Enables the vector output of the graphics paths. All the paths including the rectangles are
+     * then placed to an inline SVG layer of the page in their painting order instead of being
+     * rendered to boxes, images or lines. The layer is placed below the text and images.
+     * @param svgPaths <code>true</code> to use inline SVG for the paths
+     */
+    public void setSvgPaths(boolean svgPaths)
+    {
+        this.svgPaths = svgPaths;
+    }
 }
@@ -0,0 +1,492 @@
+/**
+ * PDFHtmlStreamTree.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.NullWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.fit.pdfdom.resource.HtmlResourceHandler;
+import org.fit.pdfdom.resource.ImageResource;
+import org.fit.pdfdom.resource.StreamingResourceHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A HTML representation of a PDF file that is written directly to the output while the
+ * document is being parsed. Unlike {@link PDFDomTree}, no DOM tree is built: each page is written
+ * as soon as it is processed so that the memory consumption does not depend on the number of pages.
+ * The produced markup corresponds to the one produced by {@link PDFDomTree}; the only difference is that
+ * the font definitions and the style classes are not known before the pages are processed. Therefore, they
+ * are placed in a single <code>style</code> element at the end of the document body instead of the
+ * document head.
+ */
+public class PDFHtmlStreamTree extends PDFBoxTree
+{
+    private static Logger log = LoggerFactory.getLogger(PDFHtmlStreamTree.class);
+
+    /** The output the resulting document is written to. */
+    protected PrintWriter out;
+
+    /** Text element counter for assigning IDs to the text elements. */
+    protected int textcnt;
+    /** Page counter for assigning IDs to the pages. */
+    protected int pagecnt;
+    /** The SVG path elements of the current page written at the end of the page. */
+    protected StringBuilder pathLayer;
+
+    /** Writes escaped text to the output. */
+    private final Writer textWriter = new EscapingWriter(false);
+    /** Writes escaped attribute values to the output. */
+    private final Writer attributeWriter = new EscapingWriter(true);
+
+    /**
+     * Creates a new PDF to HTML converter.
+     * @throws IOException
+     */
+    public PDFHtmlStreamTree() throws IOException
+    {
+        super();
+        init();
+    }
+
+    /**
+     * Creates a new PDF to HTML converter.
+     * @throws IOException
+     */
+    public PDFHtmlStreamTree(PDFDomTreeConfig config) throws IOException
+    {
+        this();
+        if (config != null)
+            this.config = config;
+    }
+
+    /**
+     * Internal initialization.
+     */
+    private void init()
+    {
+        pagecnt = 0;
+        textcnt = 0;
+        pathLayer = new StringBuilder();
+    }
+
+    /**
+     * Parses a PDF document and writes the resulting HTML code to an output. The output is
+     * written page by page while the document is being parsed.
+     */
+    @Override
+    public void writeText(PDDocument doc, Writer outputStream) throws IOException
+    {
+        out = new PrintWriter(outputStream);
+        /* The PDFTextStripper output is not used, the processing methods write to our own output */
+        super.writeText(doc, new NullWriter());
+        checkOutput();
+    }
+
+    @Override
+    protected void startDocument(PDDocument document) throws IOException
+    {
+        super.startDocument(document);
+        String doctitle = document.getDocumentInformation().getTitle();
+        if (doctitle == null || doctitle.trim().length() == 0)
+            doctitle = "PDF Document";
+
+        out.println("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.1//EN\" \"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd\">");
+        out.println("<html xmlns=\"http://www.w3.org/1999/xhtml\">");
+        out.println("<head>");
+        out.println("<meta content=\"text/html;charset=utf-8\" http-equiv=\"content-type\"/>");
+        out.print("<title>");
+        writeEscapedText(doctitle);
+        out.println("</title>");
+        writeStyle(createGlobalStyle());
+        out.println("</head>");
+        out.println("<body>");
+        checkOutput();
+    }
+
+    @Override
+    protected void endDocument(PDDocument document) throws IOException
+    {
+        writeDocumentStyle();
+        out.println("</body>");
+        out.println("</html>");
+        checkOutput();
+    }
+
+    //===========================================================================================
+
+    @Override
+    protected void startNewPage()
+    {
+        out.print("<div class=\"page\" id=\"page_" + (pagecnt++) + "\" style=\"");
+        writeEscapedAttribute(createPageStyle());
+        out.println("\">");
+        pathLayer.setLength(0);
+    }
+
+    @Override
+    protected void finishPage() throws IOException
+    {
+        writePathLayer();
+        out.println("</div>");
+        out.flush();
+        checkOutput();
+    }
+
+    @Override
+    protected void renderText(String data, TextMetrics metrics)
+    {
+        out.print("<div class=\"" + createTextClass() + "\" id=\"p" + (textcnt++) + "\" style=\"");
+        writeEscapedAttribute(createTextStyle(metrics.getWidth()));
+        out.print("\">");
+        writeEscapedText(data);
+        out.println("</div>");
+    }
+
+    @Override
+    protected void renderPath(PathBuffer path, boolean stroke, boolean fill) throws IOException
+    {
+        renderPath(path, stroke, fill, false);
+    }
+
+    @Override
+    protected void renderPath(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd) throws IOException
+    {
+        //in the SVG mode, all the paths including rectangles are kept in the SVG layer in the painting order
+        float[] rect = config.isSvgPaths() ? null : toRectangle(path);
+        if (rect != null)
+        {
+            writeBox(createRectangleStyle(rect[0], rect[1], rect[2]-rect[0], rect[3]-rect[1], stroke, fill));
+        }
+        else if (config.isSvgPaths())
+        {
+            if (!path.isEmpty())
+            {
+                pathLayer.append("<path d=\"").append(createPathData(path));
+                pathLayer.append("\" fill=\"").append(createPathFill(fill));
+                if (fill && evenOdd)
+                    pathLayer.append("\" fill-rule=\"evenodd");
+                pathLayer.append("\" stroke=\"").append(createPathStroke(stroke));
+                if (stroke)
+                    pathLayer.append("\" stroke-width=\"").append(getPathStrokeWidth());
+                pathLayer.append("\"/>\n");
+            }
+        }
+        else if (stroke)
+        {
+            for (int i = 0; i < path.size(); i++)
+                writeBox(createLineStyle(path.getX1(i), path.getY1(i), path.getX2(i), path.getY2(i)));
+        }
+        else
+        {
+            PathDrawer drawer = new PathDrawer(getGraphicsState());
+            ImageResource renderedPath = drawer.drawPath(path);
+            if (renderedPath != null)
+                writeImage((float) renderedPath.getX(), (float) renderedPath.getY(),
+                        renderedPath.getWidth(), renderedPath.getHeight(), 0, false, renderedPath, true);
+        }
+    }
+
+    @Override
+    protected void renderImage(float x, float y, float width, float height, ImageResource resource) throws IOException
+    {
+        renderImage(x, y, width, height, 0, resource);
+    }
+
+    @Override
+    protected void renderImage(float x, float y, float width, float height, float rotation, ImageResource resource) throws IOException
+    {
+        renderImage(x, y, width, height, rotation, false, resource);
+    }
+
+    @Override
+    protected void renderImage(float x, float y, float width, float height, float rotation, boolean mirrored,
+            ImageResource resource) throws IOException
+    {
+        //the images may repeat in the document, their sources are created once and reused
+        writeImage(x, y, width, height, rotation, mirrored, resource, false);
+    }
+
+    //===========================================================================================
+
+    /**
+     * Writes an image element.
+     * @param x the X coordinate of the image
+     * @param y the Y coordinate of the image
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param rotation the rotation of the image in degrees
+     * @param mirrored <code>true</code> when the image is mirrored vertically before the rotation
+     * @param resource the image resource
+     * @param streamed <code>true</code> when the image is used only once so that its source may be streamed
+     * to the output directly; <code>false</code> when the source should be obtained by
+     * {@link #getImageSource(ImageResource)} so that it is reused for the repeated images
+     * @throws IOException
+     */
+    protected void writeImage(float x, float y, float width, float height, float rotation, boolean mirrored,
+            ImageResource resource, boolean streamed) throws IOException
+    {
+        out.print("<img src=\"");
+        //the image handler (and the image decoding) is skipped when the data is not used
+        if (!disableImageData)
+        {
+            HtmlResourceHandler handler = config.getImageHandler();
+            if (streamed && handler instanceof StreamingResourceHandler)
+                ((StreamingResourceHandler) handler).writeResource(resource, attributeWriter);
+            else
+                writeEscapedAttribute(getImageSource(resource));
+        }
+        out.print("\" style=\"");
+        writeEscapedAttribute(createImageStyle(x, y, width, height, rotation, mirrored));
+        out.println("\"/>");
+    }
+
+    /**
+     * Writes an empty positioned box with the given style.
+     * @param css the CSS style of the box
+     */
+    protected void writeBox(String css)
+    {
+        out.print("<div class=\"r\" style=\"");
+        writeEscapedAttribute(css);
+        out.println("\">&nbsp;</div>");
+    }
+
+    /**
+     * Writes a single style element with the <code>@font-face</code> definitions of the fonts used
+     * in the document and the definitions of the style classes (if there are any).
+     */
+    protected void writeDocumentStyle()
+    {
+        List<FontTable.Entry> fonts = fontTable.getUsedEntries();
+        if (!fonts.isEmpty() || !styleClasses.isEmpty())
+        {
+            out.println("<style type=\"text/css\">");
+            HtmlResourceHandler handler = config.getFontHandler();
+            if (handler instanceof StreamingResourceHandler)
+            {
+                for (FontTable.Entry font : fonts)
+                    writeFontFace((StreamingResourceHandler) handler, font);
+            }
+            else
+            {
+                StringBuilder ret = new StringBuilder();
+                for (FontTable.Entry font : fonts)
+                    createFontFace(ret, font);
+                writeEscapedText(ret.toString());
+            }
+            writeStyleClasses();
+            out.println("</style>");
+        }
+    }
+
+    /**
+     * Writes a <code>@font-face</code> rule with the font data written directly by the font handler.
+     * @param handler the font handler
+     * @param font the font table entry
+     */
+    protected void writeFontFace(StreamingResourceHandler handler, FontTable.Entry font)
+    {
+        out.print("@font-face {font-family:\"");
+        writeEscapedText(font.usedName);
+        out.print("\";src:url('");
+        try
+        {
+            handler.writeResource(font, textWriter);
+        } catch (IOException e) {
+            log.error("Error writing font face data for font: " + font.getName()
+                    + "Exception: {} {}", e.getMessage(), e.getClass());
+        }
+        out.println("');}");
+    }
+
+    /**
+     * Writes the SVG layer containing the vector paths of the current page (if there are any paths).
+     * The layer is written at the end of the page and it is placed below the other contents by its style.
+     */
+    protected void writePathLayer()
+    {
+        if (pathLayer.length() > 0)
+        {
+            out.print("<svg xmlns=\"" + SVG_NS + "\"");
+            String viewBox = createPathLayerViewBox();
+            if (viewBox != null)
+                out.print(" viewBox=\"" + viewBox + "\"");
+            out.print(" style=\"");
+            writeEscapedAttribute(createPathLayerStyle());
+            out.println("\">");
+            out.print(pathLayer);
+            out.println("</svg>");
+            pathLayer.setLength(0);
+        }
+    }
+
+    /**
+     * Writes the definitions of the style classes used in the document.
+     */
+    protected void writeStyleClasses()
+    {
+        StringBuilder ret = new StringBuilder();
+        for (Map.Entry<BoxStyle, String> entry : styleClasses.entrySet())
+            createStyleClass(ret, entry.getValue(), entry.getKey());
+        writeEscapedText(ret.toString());
+    }
+
+    /**
+     * Writes a style element with the given CSS code.
+     * @param css the style sheet contents
+     */
+    protected void writeStyle(String css)
+    {
+        out.println("<style type=\"text/css\">");
+        writeEscapedText(css);
+        out.println("</style>");
+    }
+
+    /**
+     * Generate the global CSS style for the whole document.
+     * @return the CSS code used in the generated document header
+     */
+    protected String createGlobalStyle()
+    {
+        return defaultStyle;
+    }
+
+    /**
+     * Writes a text string with the special characters escaped.
+     * @param text the text to be written
+     */
+    protected void writeEscapedText(String text)
+    {
+        writeEscaped(text, false);
+    }
+
+    /**
+     * Writes an attribute value with the special characters escaped.
+     * @param value the attribute value to be written
+     */
+    protected void writeEscapedAttribute(String value)
+    {
+        writeEscaped(value, true);
+    }
+
+    private void writeEscaped(String text, boolean attribute)
+    {
+        writeEscaped(text, 0, text.length(), attribute);
+    }
+
+    private void writeEscaped(String text, int off, int len, boolean attribute)
+    {
+        int start = off;
+        final int end = off + len;
+        for (int i = off; i < end; i++)
+        {
+            final String repl = escape(text.charAt(i), attribute);
+            if (repl != null)
+            {
+                out.write(text, start, i - start);
+                out.write(repl);
+                start = i + 1;
+            }
+        }
+        out.write(text, start, end - start);
+    }
+
+    private void writeEscaped(char[] text, int off, int len, boolean attribute)
+    {
+        int start = off;
+        final int end = off + len;
+        for (int i = off; i < end; i++)
+        {
+            final String repl = escape(text[i], attribute);
+            if (repl != null)
+            {
+                out.write(text, start, i - start);
+                out.write(repl);
+                start = i + 1;
+            }
+        }
+        out.write(text, start, end - start);
+    }
+
+    private static String escape(char c, boolean attribute)
+    {
+        switch (c)
+        {
+            case '&': return "&amp;";
+            case '<': return "&lt;";
+            case '>': return "&gt;";
+            case '"': return attribute ? "&quot;" : null;
+            default: return null;
+        }
+    }
+
+    /**
+     * Checks whether the output has been written successfully.
+     * @throws IOException when writing the output failed
+     */
+    protected void checkOutput() throws IOException
+    {
+        if (out.checkError())
+            throw new IOException("Error: cannot write the output");
+    }
+
+    //===========================================================================================
+
+    /**
+     * A writer that escapes the written characters and passes them to the output.
+     */
+    private class EscapingWriter extends Writer
+    {
+        private final boolean attribute;
+
+        public EscapingWriter(boolean attribute)
+        {
+            this.attribute = attribute;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+            writeEscaped(cbuf, off, len, attribute);
+        }
+
+        @Override
+        public void write(String str, int off, int len)
+        {
+            writeEscaped(str, off, len, attribute);
+        }
+
+        @Override
+        public void flush()
+        {
+            out.flush();
+        }
+
+        @Override
+        public void close()
+        {
+            //the output is closed by its owner
+        }
+    }
+
+}
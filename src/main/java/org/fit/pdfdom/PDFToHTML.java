@@ -19,16 +19,39 @@
  */
 package org.fit.pdfdom;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.fit.pdfdom.resource.DiskFontCache;
+import org.fit.pdfdom.resource.FontCache;
 import org.fit.pdfdom.resource.HtmlResourceHandler;
 import org.fit.pdfdom.resource.IgnoreResourceHandler;
+import org.fit.pdfdom.resource.MemoryFontCache;
 import org.fit.pdfdom.resource.SaveResourceToDirHandler;
 
 /**
@@ -42,46 +65,87 @@ public class PDFToHTML
     {
         if (args.length < 1)
         {
-            System.out.println("Usage: PDFToHTML <infile> [<outfile>] [<options>]");
-            System.out.println("Options: ");
-            System.out.println("-fm=[mode] Font handler mode. [mode] = EMBED_BASE64, SAVE_TO_DIR, IGNORE");
-            System.out.println("-fdir=[path] Directory to extract fonts to. [path] = font extract directory ie dir/my-font-dir");
-            System.out.println();
-            System.out.println("-im=[mode] Image handler mode. [mode] = EMBED_BASE64, SAVE_TO_DIR, IGNORE");
-            System.out.println("-idir=[path] Directory to extract images to. [path] = image extract directory ie dir/my-image-dir");
-
+            printUsage();
             System.exit(1);
         }
         
+        if (hasFlag(parseFlags(args), "batch"))
+        {
+            int failed = convertBatch(args);
+            if (failed < 0)
+                System.exit(1);
+            System.exit(failed == 0 ? 0 : 2);
+        }
+
         String infile = args[0];
         String outfile;
         if (args.length > 1 && !args[1].startsWith("-"))
             outfile = args[1];
         else
-        {
-            String base = args[0];
-            if (base.toLowerCase().endsWith(".pdf"))
-                base = base.substring(0, base.length() - 4);
-            outfile = base + ".html";
-        }
+            outfile = createOutputFileName(args[0]);
 
         PDFDomTreeConfig config = parseOptions(args);
+        config.setFontCache(createFontCache(parseFlags(args)));
 
-        PDDocument document = null;
         try
         {
-            document = PDDocument.load(new File(infile));
-            PDFDomTree parser = new PDFDomTree(config);
-            //parser.setDisableImageData(true);
-            Writer output = new PrintWriter(outfile, "utf-8");
-            parser.writeText(document, output);
-            output.close();
+            convert(new File(infile), new File(outfile), config);
         }
         catch (Exception e)
         {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
         }
+    }
+
+    private static void printUsage()
+    {
+        System.out.println("Usage: PDFToHTML <infile> [<outfile>] [<options>]");
+        System.out.println("       PDFToHTML -batch [<options>] <input> [<input> ...]");
+        System.out.println("Options: ");
+        System.out.println("-fm=[mode] Font handler mode. [mode] = EMBED_BASE64, SAVE_TO_DIR, IGNORE");
+        System.out.println("-fdir=[path] Directory to extract fonts to. [path] = font extract directory ie dir/my-font-dir");
+        System.out.println("-fcache=[path] Directory for keeping the converted fonts between runs.");
+        System.out.println();
+        System.out.println("-im=[mode] Image handler mode. [mode] = EMBED_BASE64, SAVE_TO_DIR, IGNORE");
+        System.out.println("-idir=[path] Directory to extract images to. [path] = image extract directory ie dir/my-image-dir");
+        System.out.println();
+        System.out.println("-classes Use generated CSS classes for the text styles instead of inline styles.");
+        System.out.println("-svg Use inline SVG for the graphics paths instead of images.");
+        System.out.println();
+        System.out.println("-batch Convert multiple documents. <input> = PDF file, directory (searched recursively)");
+        System.out.println("       or glob pattern ie dir/**/*.pdf (matches the files in dir and all its subdirectories)");
+        System.out.println("-stdin Read additional input file names from the standard input, one per line.");
+        System.out.println("-threads=[n] Number of documents converted concurrently in the batch mode.");
+        System.out.println("-odir=[path] Output directory for the batch mode. Default is the directory of each input file.");
+        System.out.println("       The paths of the files found in a directory or by a glob pattern are kept relative to odir.");
+    }
+
+    /**
+     * Converts a single PDF file to HTML.
+     * @param infile the source PDF file
+     * @param outfile the destination HTML file
+     * @param config the parser configuration
+     * @throws IOException
+     */
+    private static void convert(File infile, File outfile, PDFDomTreeConfig config) throws IOException
+    {
+        PDDocument document = null;
+        try
+        {
+            document = PDDocument.load(infile);
+            PDFDomTree parser = new PDFDomTree(config);
+            //parser.setDisableImageData(true);
+            Writer output = new PrintWriter(outfile, "utf-8");
+            try
+            {
+                parser.writeText(document, output);
+            }
+            finally
+            {
+                output.close();
+            }
+        }
         finally
         {
             if( document != null )
@@ -97,6 +161,307 @@ public class PDFToHTML
         }
     }
 
+    private static String createOutputFileName(String infile)
+    {
+        String base = infile;
+        if (base.toLowerCase().endsWith(".pdf"))
+            base = base.substring(0, base.length() - 4);
+        return base + ".html";
+    }
+
+    //===========================================================================================
+
+    /**
+     * Converts all the input files specified in the command line using a pool of worker threads.
+     * A failure of a single file does not affect the remaining ones. Each document is converted
+     * with its own configuration; only the font cache and the handlers saving the resources
+     * to a directory are shared by the documents.
+     * @param args the command line arguments
+     * @return the number of files that could not be converted or -1 when the options are invalid
+     */
+    static int convertBatch(final String[] args)
+    {
+        final List<CommandLineFlag> flags = parseFlags(args);
+        final PDFDomTreeConfig shared = parseOptions(args);
+        //the fonts repeat across the documents
+        FontCache fontCache = createFontCache(flags);
+        shared.setFontCache(fontCache == null ? new MemoryFontCache() : fontCache);
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outdir = null;
+        boolean stdin = false;
+        for (CommandLineFlag flagOn : flags)
+        {
+            if (flagOn.flagName.equals("threads"))
+            {
+                try
+                {
+                    threads = Integer.parseInt(flagOn.value);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1)
+                {
+                    System.err.println("Error: invalid number of threads: " + flagOn.value);
+                    printUsage();
+                    return -1;
+                }
+            }
+            else if (flagOn.flagName.equals("odir"))
+                outdir = new File(flagOn.value);
+            else if (flagOn.flagName.equals("stdin"))
+                stdin = true;
+        }
+
+        //input files mapped to their paths relative to the input base directories
+        Map<File, String> files = new LinkedHashMap<File, String>();
+        try
+        {
+            for (String argOn : args)
+            {
+                if (!argOn.startsWith("-"))
+                    findInputFiles(argOn, files);
+            }
+            if (stdin)
+            {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, "utf-8"));
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (!line.trim().isEmpty())
+                        findInputFiles(line.trim(), files);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: cannot read the input file list: " + e.getMessage());
+            return 1;
+        }
+        if (outdir != null)
+            outdir.mkdirs();
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BatchResults results = new BatchResults(new ExecutorCompletionService<Long>(executor));
+        //keep only a few documents waiting for a thread instead of queuing all of them at once
+        int maxPending = threads * 2;
+        Map<File, File> outfiles = new HashMap<File, File>(files.size());
+        try
+        {
+            for (Map.Entry<File, String> entry : files.entrySet())
+            {
+                final File fileOn = entry.getKey();
+                final File outfile = outdir == null ? new File(createOutputFileName(fileOn.getPath()))
+                        : new File(outdir, createOutputFileName(entry.getValue()));
+                File previous = outfiles.put(outfile.getAbsoluteFile(), fileOn);
+                if (previous != null)
+                {
+                    //never overwrite the output of another input file
+                    outfiles.put(outfile.getAbsoluteFile(), previous);
+                    results.fail(fileOn, new IOException("output file " + outfile + " is already used for " + previous));
+                    continue;
+                }
+                if (outfile.getParentFile() != null)
+                    outfile.getParentFile().mkdirs();
+                while (results.pending() >= maxPending)
+                    results.collect();
+                results.submit(fileOn, new Callable<Long>() {
+                    public Long call() throws IOException
+                    {
+                        long start = System.currentTimeMillis();
+                        convert(fileOn, outfile, createTaskConfig(args, shared));
+                        return System.currentTimeMillis() - start;
+                    }
+                });
+            }
+            while (results.pending() > 0)
+                results.collect();
+            executor.shutdown();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            results.cancel(e);
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        //print the summary
+        int failed = results.failures.size();
+        int converted = files.size() - failed;
+        System.out.println("Documents: " + files.size() + ", converted: " + converted + ", failed: " + failed);
+        System.out.println("Total time: " + elapsed + " ms using " + threads + " threads");
+        if (results.converted > 0)
+        {
+            System.out.println("Average conversion time: " + (results.totalTime / results.converted) + " ms per document");
+            System.out.println("Slowest document: " + results.slowest + " (" + results.maxTime + " ms)");
+        }
+        for (Map.Entry<File, Throwable> failure : results.failures.entrySet())
+            System.out.println("Failed: " + failure.getKey() + ": " + failure.getValue());
+
+        return failed;
+    }
+
+    /**
+     * Creates the configuration for converting a single document in the batch mode. The handlers
+     * saving to a directory are taken from the shared configuration because they keep the names
+     * of the files already written so that the documents do not overwrite each other's resources.
+     * @param args the command line arguments
+     * @param shared the configuration shared by all the documents
+     * @return the new configuration
+     */
+    private static PDFDomTreeConfig createTaskConfig(String[] args, PDFDomTreeConfig shared)
+    {
+        PDFDomTreeConfig config = parseOptions(args);
+        config.setFontCache(shared.getFontCache());
+        if (shared.getFontHandler() instanceof SaveResourceToDirHandler)
+            config.setFontHandler(shared.getFontHandler());
+        if (shared.getImageHandler() instanceof SaveResourceToDirHandler)
+            config.setImageHandler(shared.getImageHandler());
+        return config;
+    }
+
+    /**
+     * The results of the batch conversion collected in the order the documents are finished.
+     */
+    private static class BatchResults
+    {
+        private final CompletionService<Long> completion;
+        private final Map<Future<Long>, File> running = new HashMap<Future<Long>, File>();
+        public final Map<File, Throwable> failures = new LinkedHashMap<File, Throwable>();
+        public int converted = 0;
+        public long totalTime = 0;
+        public long maxTime = -1;
+        public File slowest = null;
+
+        public BatchResults(CompletionService<Long> completion)
+        {
+            this.completion = completion;
+        }
+
+        public int pending()
+        {
+            return running.size();
+        }
+
+        public void submit(File file, Callable<Long> task)
+        {
+            running.put(completion.submit(task), file);
+        }
+
+        /**
+         * Waits for the next document to be finished and records its result.
+         */
+        public void collect() throws InterruptedException
+        {
+            Future<Long> result = completion.take();
+            File file = running.remove(result);
+            try
+            {
+                long time = result.get();
+                converted++;
+                totalTime += time;
+                if (time > maxTime)
+                {
+                    maxTime = time;
+                    slowest = file;
+                }
+            } catch (ExecutionException e) {
+                fail(file, e.getCause());
+            }
+        }
+
+        public void fail(File file, Throwable cause)
+        {
+            failures.put(file, cause);
+            System.err.println("Error: " + file + ": " + cause);
+        }
+
+        /**
+         * Records all the documents that have not been finished as failed.
+         */
+        public void cancel(Throwable cause)
+        {
+            for (File file : running.values())
+                failures.put(file, cause);
+            running.clear();
+        }
+    }
+
+    /**
+     * Finds the input files corresponding to a command line argument.
+     * @param input a file name, a directory name or a glob pattern
+     * @param files the map where the found files are added together with their paths relative
+     * to the directory or to the base directory of the pattern
+     * @throws IOException
+     */
+    private static void findInputFiles(String input, Map<File, String> files) throws IOException
+    {
+        int globStart = indexOfGlob(input);
+        if (globStart != -1)
+        {
+            //split the pattern to the base directory and the pattern to be matched within the directory
+            int slash = Math.max(input.lastIndexOf('/', globStart), input.lastIndexOf(File.separatorChar, globStart));
+            Path base = Paths.get(slash == -1 ? "." : input.substring(0, slash + 1));
+            String pattern = input.substring(slash + 1);
+            //let **/ match zero directories as well so that dir/**/*.pdf includes the files in dir
+            if (pattern.indexOf('{') == -1)
+                pattern = pattern.replace("**/", "{**/,}");
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            for (Path pathOn : listFiles(base))
+            {
+                Path relative = base.relativize(pathOn);
+                if (matcher.matches(relative))
+                    files.put(pathOn.toFile(), relative.toString());
+            }
+        }
+        else
+        {
+            File file = new File(input);
+            if (file.isDirectory())
+            {
+                Path base = file.toPath();
+                for (Path pathOn : listFiles(base))
+                {
+                    if (pathOn.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                        files.put(pathOn.toFile(), base.relativize(pathOn).toString());
+                }
+            }
+            else
+                files.put(file, file.getName());
+        }
+    }
+
+    private static int indexOfGlob(String input)
+    {
+        for (int i = 0; i < input.length(); i++)
+        {
+            if ("*?[{".indexOf(input.charAt(i)) != -1)
+                return i;
+        }
+        return -1;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException
+    {
+        List<Path> ret = new ArrayList<Path>();
+        Stream<Path> paths = Files.walk(dir);
+        try
+        {
+            Iterator<Path> it = paths.iterator();
+            while (it.hasNext())
+            {
+                Path pathOn = it.next();
+                if (Files.isRegularFile(pathOn))
+                    ret.add(pathOn);
+            }
+        }
+        finally
+        {
+            paths.close();
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    //===========================================================================================
+
     private static PDFDomTreeConfig parseOptions(String[] args)
     {
         PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
@@ -117,11 +482,28 @@ public class PDFToHTML
                 config.setImageHandler(handler);
             } else if (flagOn.flagName.equals("idir"))
                 config.setImageHandler(new SaveResourceToDirHandler(new File(flagOn.value)));
+
+            else if (flagOn.flagName.equals("classes"))
+                config.setStyleClasses(true);
+            else if (flagOn.flagName.equals("svg"))
+                config.setSvgPaths(true);
         }
 
         return config;
     }
 
+    private static FontCache createFontCache(List<CommandLineFlag> flags)
+    {
+        FontCache cache = null;
+        for (CommandLineFlag flagOn : flags)
+        {
+            if (flagOn.flagName.equals("fcache"))
+                cache = new MemoryFontCache(MemoryFontCache.DEFAULT_MAX_SIZE,
+                        new DiskFontCache(new File(flagOn.value)));
+        }
+        return cache;
+    }
+
     private static HtmlResourceHandler createResourceHandlerFor(String value)
     {
         HtmlResourceHandler handler = PDFDomTreeConfig.embedAsBase64();
@@ -146,6 +528,16 @@ public class PDFToHTML
         return flags;
     }
 
+    private static boolean hasFlag(List<CommandLineFlag> flags, String name)
+    {
+        for (CommandLineFlag flagOn : flags)
+        {
+            if (flagOn.flagName.equals(name))
+                return true;
+        }
+        return false;
+    }
+
     private static class CommandLineFlag
     {
         public String flagName;
@@ -0,0 +1,40 @@
+/**
+ * PageListener.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.w3c.dom.Element;
+
+/**
+ * A listener that is notified by {@link PDFDomTree} about each page as soon as the page is processed.
+ * After the listener returns, the page element is removed from the resulting document so that
+ * it may be garbage collected.
+ */
+public interface PageListener
+{
+    /**
+     * Called when a page has been completely processed.
+     * @param pageNumber the page number (starting with 1)
+     * @param page the DOM element representing the page; it is detached from the document
+     * after this method returns
+     * @param pdpage the source PDF page including its resources
+     * @throws IOException
+     */
+    public void pageFinished(int pageNumber, Element page, PDPage pdpage) throws IOException;
+}
@@ -0,0 +1,304 @@
+/**
+ * ParallelPDFDomTree.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A DOM representation of a PDF file whose pages are converted in parallel. The page range is split
+ * to continuous parts that are processed by a pool of worker threads. Each worker opens its own
+ * instance of the source document and uses its own {@link PDFDomTree}. The resulting pages are
+ * then joined in the original order, the style classes are merged and a single global style is created.
+ *
+ * The workers share the configuration of this tree including the resource handlers and the font cache,
+ * which must be thread-safe. This is the case for all the handlers and caches provided by Pdf2Dom.
+ * The font names are assigned by the font table of this tree when the fonts are used for the first time
+ * by any of the workers. When different fonts share the same family name, the numbering of their names
+ * may therefore depend on the order in which the workers reach them.
+ *
+ * A page listener (see {@link #setPageListener(PageListener)}) is notified about the pages in the
+ * document order as the parts are joined. The memory is therefore released after each part rather than
+ * after each page.
+ *
+ * Since the document has to be opened repeatedly, the parallel processing is only available for
+ * documents loaded from a file. {@link #createDOM(PDDocument)} processes the pages sequentially.
+ */
+public class ParallelPDFDomTree extends PDFDomTree
+{
+    /** The number of worker threads */
+    protected int threads;
+
+    /**
+     * Creates a new parallel PDF DOM parser that uses a worker thread for each available processor.
+     * @throws IOException
+     */
+    public ParallelPDFDomTree() throws IOException
+    {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new parallel PDF DOM parser.
+     * @param config the parser configuration or {@code null} for the default configuration
+     * @param threads the number of worker threads
+     * @throws IOException
+     */
+    public ParallelPDFDomTree(PDFDomTreeConfig config, int threads) throws IOException
+    {
+        super(config);
+        setThreads(threads);
+    }
+
+    /**
+     * Obtains the number of worker threads.
+     * @return the number of threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the number of worker threads used for processing the pages.
+     * @param threads the number of threads (at least 1)
+     */
+    public void setThreads(int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is required");
+        this.threads = threads;
+    }
+
+    /**
+     * Parses a PDF file and serializes the resulting DOM tree to an output.
+     * @param file the source PDF file
+     * @param outputStream the output to write the document to
+     * @throws IOException
+     */
+    public void writeText(File file, Writer outputStream) throws IOException
+    {
+        createDOM(file);
+        writeDocument(outputStream);
+    }
+
+    /**
+     * Loads a PDF file and creates a DOM tree from it. The pages are processed in parallel.
+     * @param file the source PDF file
+     * @return a DOM Document representing the DOM tree
+     * @throws IOException
+     */
+    public Document createDOM(final File file) throws IOException
+    {
+        PDDocument document = PDDocument.load(file);
+        try
+        {
+            startDocument(document);
+            final int first = Math.max(getStartPage(), 1);
+            final int last = Math.min(getEndPage(), document.getNumberOfPages());
+            final int count = last - first + 1;
+            if (count > 0)
+            {
+                final int parts = Math.min(threads, count);
+                ExecutorService executor = Executors.newFixedThreadPool(parts);
+                try
+                {
+                    List<Future<PDFDomTree>> results = new ArrayList<Future<PDFDomTree>>(parts);
+                    for (int i = 0; i < parts; i++)
+                    {
+                        final int from = first + (int) ((long) count * i / parts);
+                        final int to = first + (int) ((long) count * (i + 1) / parts) - 1;
+                        results.add(executor.submit(new Callable<PDFDomTree>() {
+                            public PDFDomTree call() throws IOException
+                            {
+                                return processPages(file, from, to);
+                            }
+                        }));
+                    }
+                    for (Future<PDFDomTree> result : results)
+                        appendPages(result.get(), document);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Error: page processing interrupted", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    else
+                        throw new IOException("Error: page processing failed", e.getCause());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            endDocument(document);
+        }
+        finally
+        {
+            document.close();
+        }
+        return this.doc;
+    }
+
+    //===========================================================================================
+
+    /**
+     * Processes a range of pages of the document in a separate document instance.
+     * @param file the source PDF file
+     * @param from the first page to be processed
+     * @param to the last page to be processed
+     * @return the tree containing the processed pages
+     * @throws IOException
+     */
+    protected PDFDomTree processPages(File file, int from, int to) throws IOException
+    {
+        PDDocument document = PDDocument.load(file);
+        try
+        {
+            PDFDomTree tree = createPageTree();
+            tree.setStartPage(from);
+            tree.setEndPage(to);
+            tree.createDOM(document);
+            return tree;
+        }
+        finally
+        {
+            document.close();
+        }
+    }
+
+    /**
+     * Creates a tree used by a worker for processing a range of pages. The tree uses the configuration
+     * and the settings of this tree. Its font table obtains the font names from the font table of this tree
+     * so that the text styles use the final font names.
+     * @return the new tree
+     * @throws IOException
+     */
+    protected PDFDomTree createPageTree() throws IOException
+    {
+        PDFDomTree tree = new PDFDomTree(config) {
+            @Override
+            protected void endDocument(PDDocument document) throws IOException
+            {
+                //the global style is only created for the joined document
+            }
+        };
+        tree.fontTable = new FontTable(fontTable);
+        tree.setDisableGraphics(disableGraphics);
+        tree.setDisableImages(disableImages);
+        tree.setDisableImageData(disableImageData);
+        tree.setSortByPosition(getSortByPosition());
+        tree.setSuppressDuplicateOverlappingText(getSuppressDuplicateOverlappingText());
+        return tree;
+    }
+
+    /**
+     * Appends the pages processed by a worker to the resulting document and merges the style classes.
+     * When a page listener is set, the pages are passed to the listener instead.
+     * @param part the tree created by the worker
+     * @param document the source document
+     * @throws IOException
+     */
+    protected void appendPages(PDFDomTree part, PDDocument document) throws IOException
+    {
+        //merge the style classes; the class names may change
+        Map<String, String> classNames = new HashMap<String, String>();
+        for (Map.Entry<BoxStyle, String> entry : part.styleClasses.entrySet())
+        {
+            String className = getStyleClass(entry.getKey());
+            if (!className.equals(entry.getValue()))
+                classNames.put(entry.getValue(), className);
+        }
+        //move the pages to the resulting document
+        int pageNumber = part.getStartPage();
+        Node child;
+        while ((child = part.body.getFirstChild()) != null)
+        {
+            part.body.removeChild(child);
+            Node page = doc.adoptNode(child);
+            if (page == null)
+                page = doc.importNode(child, true);
+            body.appendChild(page);
+            if (page instanceof Element)
+            {
+                updatePage((Element) page, classNames);
+                if (pageListener != null)
+                {
+                    pageListener.pageFinished(pageNumber, (Element) page, document.getPage(pageNumber - 1));
+                    body.removeChild(page);
+                }
+                pageNumber++;
+            }
+        }
+    }
+
+    /**
+     * Updates the element IDs and the style classes used in a page obtained from a worker.
+     * @param page the page element
+     * @param classNames the style class name changes
+     */
+    protected void updatePage(Element page, Map<String, String> classNames)
+    {
+        page.setAttribute("id", "page_" + (pagecnt++));
+        NodeList children = page.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++)
+        {
+            Node child = children.item(i);
+            if (child instanceof Element && isTextElement((Element) child))
+            {
+                Element el = (Element) child;
+                el.setAttribute("id", "p" + (textcnt++));
+                if (!classNames.isEmpty())
+                    el.setAttribute("class", updateStyleClass(el.getAttribute("class"), classNames));
+            }
+        }
+    }
+
+    private boolean isTextElement(Element el)
+    {
+        String cls = el.getAttribute("class");
+        return cls.equals("p") || cls.startsWith("p ");
+    }
+
+    private String updateStyleClass(String cls, Map<String, String> classNames)
+    {
+        StringBuilder ret = new StringBuilder();
+        for (String name : cls.split(" "))
+        {
+            String newName = classNames.get(name);
+            if (ret.length() > 0)
+                ret.append(' ');
+            ret.append(newName != null ? newName : name);
+        }
+        return ret.toString();
+    }
+
+}
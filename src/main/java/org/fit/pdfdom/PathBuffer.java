@@ -0,0 +1,167 @@
+/**
+ * PathBuffer.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable buffer of the straight segments of a graphics path. The segment end points are stored
+ * in a growable float array so that no objects are allocated while the path is being built.
+ * The buffer is not synchronized.
+ */
+public class PathBuffer
+{
+    /** A line segment created by a line or rectangle operator */
+    public static final byte LINE = 0;
+    /** A segment that closes a subpath (connects the current point with the subpath start) */
+    public static final byte CLOSE = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Segment coordinates: x1, y1, x2, y2 for each segment */
+    private float[] coords;
+    /** Segment kinds */
+    private byte[] kinds;
+    /** The number of segments */
+    private int size;
+
+    /**
+     * Creates an empty path buffer.
+     */
+    public PathBuffer()
+    {
+        coords = new float[INITIAL_CAPACITY * 4];
+        kinds = new byte[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Creates a path buffer containing the given segments.
+     * @param segments the path segments
+     */
+    public PathBuffer(List<PathSegment> segments)
+    {
+        this();
+        for (PathSegment segm : segments)
+            addSegment(LINE, segm.getX1(), segm.getY1(), segm.getX2(), segm.getY2());
+    }
+
+    /**
+     * Adds a line segment to the path.
+     */
+    public void addLine(float x1, float y1, float x2, float y2)
+    {
+        addSegment(LINE, x1, y1, x2, y2);
+    }
+
+    /**
+     * Adds a segment that closes the current subpath.
+     */
+    public void addClose(float x1, float y1, float x2, float y2)
+    {
+        addSegment(CLOSE, x1, y1, x2, y2);
+    }
+
+    /**
+     * Adds a segment of the given kind to the path.
+     * @param kind the segment kind ({@link #LINE} or {@link #CLOSE})
+     */
+    public void addSegment(byte kind, float x1, float y1, float x2, float y2)
+    {
+        if (size == kinds.length)
+        {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            coords = Arrays.copyOf(coords, size * 8);
+        }
+        final int i = size * 4;
+        coords[i] = x1;
+        coords[i + 1] = y1;
+        coords[i + 2] = x2;
+        coords[i + 3] = y2;
+        kinds[size] = kind;
+        size++;
+    }
+
+    /**
+     * Removes all the segments. The allocated space is kept for reuse.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public byte getKind(int index)
+    {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    public float getX1(int index)
+    {
+        checkIndex(index);
+        return coords[index * 4];
+    }
+
+    public float getY1(int index)
+    {
+        checkIndex(index);
+        return coords[index * 4 + 1];
+    }
+
+    public float getX2(int index)
+    {
+        checkIndex(index);
+        return coords[index * 4 + 2];
+    }
+
+    public float getY2(int index)
+    {
+        checkIndex(index);
+        return coords[index * 4 + 3];
+    }
+
+    /**
+     * Creates a list of segment objects representing the path.
+     * @return the list of segments
+     */
+    public List<PathSegment> toSegments()
+    {
+        List<PathSegment> ret = new ArrayList<PathSegment>(size);
+        for (int i = 0; i < size; i++)
+            ret.add(new PathSegment(getX1(i), getY1(i), getX2(i), getY2(i)));
+        return ret;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+}
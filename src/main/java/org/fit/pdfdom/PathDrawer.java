@@ -41,6 +41,11 @@ public class PathDrawer
     }
 
     public ImageResource drawPath(List<PathSegment> path) throws IOException
+    {
+        return drawPath(new PathBuffer(path));
+    }
+
+    public ImageResource drawPath(PathBuffer path) throws IOException
     {
         if (path.size() == 0)
             return new ImageResource("PathImage", new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
@@ -93,38 +98,36 @@ public class PathDrawer
         gfx.setColor(fill);
     }
 
-    private void drawPathSegments(List<PathSegment> path, Graphics2D gfx)
+    private void drawPathSegments(PathBuffer path, Graphics2D gfx)
     {
         int[] xPts = new int[path.size()];
         int[] yPts = new int[path.size()];
         
         for (int i = 0; i < path.size(); i++)
         {
-            PathSegment segmentOn = path.get(i);
-            xPts[i] = (int) segmentOn.getX1();
-            yPts[i] = (int) segmentOn.getY1();
+            xPts[i] = (int) path.getX1(i);
+            yPts[i] = (int) path.getY1(i);
         }
 
         gfx.fillPolygon(xPts, yPts, path.size());
     }
 
-    private Rectangle2D.Double getPathBounds(List<PathSegment> path)
+    private Rectangle2D.Double getPathBounds(PathBuffer path)
     {
-        PathSegment first = path.get(0);
-        int minX = (int) first.getX1(), maxX = (int) first.getX1();
-        int minY = (int) first.getY2(), maxY = (int) first.getY1();
+        int minX = (int) path.getX1(0), maxX = (int) path.getX1(0);
+        int minY = (int) path.getY2(0), maxY = (int) path.getY1(0);
 
-        for (PathSegment segmentOn : path)
+        for (int i = 0; i < path.size(); i++)
         {
-            maxX = Math.max((int) segmentOn.getX1(), maxX);
-            maxX = Math.max((int) segmentOn.getX2(), maxX);
-            maxY = Math.max((int) segmentOn.getY1(), maxY);
-            maxY = Math.max((int) segmentOn.getY2(), maxY);
-
-            minX = Math.min((int) segmentOn.getX1(), minX);
-            minX = Math.min((int) segmentOn.getX2(), minX);
-            minY = Math.min((int) segmentOn.getY1(), minY);
-            minY = Math.min((int) segmentOn.getY2(), minY);
+            maxX = Math.max((int) path.getX1(i), maxX);
+            maxX = Math.max((int) path.getX2(i), maxX);
+            maxY = Math.max((int) path.getY1(i), maxY);
+            maxY = Math.max((int) path.getY2(i), maxY);
+
+            minX = Math.min((int) path.getX1(i), minX);
+            minX = Math.min((int) path.getX2(i), minX);
+            minY = Math.min((int) path.getY1(i), minY);
+            minY = Math.min((int) path.getY2(i), minY);
         }
 
         int width = maxX - minX;
@@ -5,18 +5,29 @@ import java.io.IOException;
 
 import org.apache.fontbox.util.BoundingBox;
 import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
 import org.apache.pdfbox.text.TextPosition;
 
 public class TextMetrics
 {
     private float x, baseline, width, height, pointSize, descent, ascent, fontSize;
-    private PDFont font;
+    private FontMetrics fontMetrics;
 
     public TextMetrics(TextPosition tp)
+    {
+        this(tp, new FontMetrics(tp.getFont()));
+    }
+
+    /**
+     * Creates the metrics of a text position using already known metrics of its font.
+     * @param tp the text position
+     * @param fontMetrics the metrics of the text position font
+     */
+    public TextMetrics(TextPosition tp, FontMetrics fontMetrics)
     {
         x = tp.getX();
         baseline = tp.getY();
-        font = tp.getFont();
+        this.fontMetrics = fontMetrics;
         width = tp.getWidth();
         height = tp.getHeight();
         pointSize = tp.getFontSizeInPt();
@@ -26,11 +37,21 @@ public class TextMetrics
     }
 
     public void append(TextPosition tp)
+    {
+        append(tp, new FontMetrics(tp.getFont()));
+    }
+
+    /**
+     * Extends the metrics with a text position using already known metrics of its font.
+     * @param tp the text position
+     * @param fontMetrics the metrics of the text position font
+     */
+    public void append(TextPosition tp, FontMetrics fontMetrics)
     {
         width += tp.getX() - (x + width) + tp.getWidth();
         height = Math.max(height, tp.getHeight());
-        ascent = Math.max(ascent, getAscent(tp.getFont(), tp.getYScale()));
-        descent = Math.min(descent, getDescent(tp.getFont(), tp.getYScale()));
+        ascent = Math.max(ascent, fontMetrics.getAscent(tp.getYScale()));
+        descent = Math.min(descent, fontMetrics.getDescent(tp.getYScale()));
     }
     
     public float getX()
@@ -61,23 +82,23 @@ public class TextMetrics
 
     public float getAscent()
     {
-        return getAscent(font, fontSize);
+        return fontMetrics.getAscent(fontSize);
     }
 
     public float getDescent()
     {
-        final float descent = getDescent(font, fontSize);
+        final float descent = fontMetrics.getDescent(fontSize);
         return descent > 0 ? -descent : descent; //positive descent is not allowed
     }
 
     public float getBoundingBoxDescent()
     {
-        return getBoundingBoxDescent(font, fontSize);
+        return fontMetrics.getBoundingBoxDescent(fontSize);
     }
 
     public float getBoundingBoxAscent()
     {
-        return getBoundingBoxAscent(font, fontSize);
+        return fontMetrics.getBoundingBoxAscent(fontSize);
     }
 
     public static float getBoundingBoxDescent(PDFont font, float fontSize)
@@ -104,27 +125,6 @@ public class TextMetrics
         return 0.0f;
     }
 
-    private static float getAscent(PDFont font, float fontSize)
-    {
-        try
-        {
-            return (font.getFontDescriptor().getAscent() / 1000) * fontSize;
-        } catch (Exception e) {
-        }
-        return 0.0f;
-    }
-
-    private static float getDescent(PDFont font, float fontSize)
-    {
-        try
-        {
-            return (font.getFontDescriptor().getDescent() / 1000) * fontSize;
-        } catch (Exception e)
-        {
-        }
-        return 0.0f;
-    }
-
     public float getWidth()
     {
         return width;
@@ -140,5 +140,73 @@ public class TextMetrics
         return pointSize;
     }
 
+    //===========================================================================================
 
-}
\ No newline at end of file
+    /**
+     * The font properties used for computing the text metrics. The values are obtained from the
+     * font once, so that the metrics of the individual glyphs may be computed by simple arithmetic.
+     * A missing font descriptor or bounding box is recorded as well.
+     */
+    public static class FontMetrics
+    {
+        private final PDFont font;
+        private boolean descriptorValid;
+        private float ascent, descent;
+        private boolean bboxLoaded, bboxValid;
+        private float bboxLowerY, bboxUpperY;
+
+        public FontMetrics(PDFont font)
+        {
+            this.font = font;
+            try
+            {
+                PDFontDescriptor fd = font.getFontDescriptor();
+                if (fd != null)
+                {
+                    ascent = fd.getAscent();
+                    descent = fd.getDescent();
+                    descriptorValid = true;
+                }
+            } catch (Exception e) {
+            }
+        }
+
+        public float getAscent(float fontSize)
+        {
+            return descriptorValid ? (ascent / 1000) * fontSize : 0.0f;
+        }
+
+        public float getDescent(float fontSize)
+        {
+            return descriptorValid ? (descent / 1000) * fontSize : 0.0f;
+        }
+
+        public float getBoundingBoxAscent(float fontSize)
+        {
+            loadBoundingBox();
+            return bboxValid ? (bboxUpperY / 1000) * fontSize : 0.0f;
+        }
+
+        public float getBoundingBoxDescent(float fontSize)
+        {
+            loadBoundingBox();
+            return bboxValid ? (bboxLowerY / 1000) * fontSize : 0.0f;
+        }
+
+        private void loadBoundingBox()
+        {
+            if (!bboxLoaded)
+            {
+                try
+                {
+                    BoundingBox bBox = font.getBoundingBox();
+                    bboxLowerY = bBox.getLowerLeftY();
+                    bboxUpperY = bBox.getUpperRightY();
+                    bboxValid = true;
+                } catch (IOException e) {
+                }
+                bboxLoaded = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * XObjectImageResource.java
+ *
+ * Pdf2Dom is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Pdf2Dom is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fit.pdfdom;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.fit.pdfdom.resource.ImageResource;
+
+/**
+ * An image resource created from an image XObject. The image is only decoded (and rotated)
+ * when its data is actually requested by a resource handler. The decoded image is not kept
+ * in memory.
+ */
+class XObjectImageResource extends ImageResource
+{
+    private final PDImageXObject pdfImage;
+    private final double rotation;
+    private final int subsampling;
+
+    /**
+     * Creates a new image resource.
+     * @param name the resource name
+     * @param pdfImage the source image XObject
+     * @param rotation the rotation to be applied to the image in radians
+     */
+    public XObjectImageResource(String name, PDImageXObject pdfImage, double rotation)
+    {
+        this(name, pdfImage, rotation, 1);
+    }
+
+    /**
+     * Creates a new image resource with a reduced resolution.
+     * @param name the resource name
+     * @param pdfImage the source image XObject
+     * @param rotation the rotation to be applied to the image in radians
+     * @param subsampling the subsampling factor: only every n-th pixel in each direction is used
+     */
+    public XObjectImageResource(String name, PDImageXObject pdfImage, double rotation, int subsampling)
+    {
+        super(name);
+        this.pdfImage = pdfImage;
+        this.rotation = rotation;
+        this.subsampling = subsampling;
+    }
+
+    @Override
+    protected BufferedImage getImage() throws IOException
+    {
+        BufferedImage image = subsampling > 1 ? pdfImage.getImage(null, subsampling) : pdfImage.getImage();
+        return rotation == 0 ? image : ImageUtils.rotateImage(image, rotation);
+    }
+
+    @Override
+    public float getWidth()
+    {
+        return (float) (Math.abs(getImageWidth() * Math.cos(rotation))
+                + Math.abs(getImageHeight() * Math.sin(rotation)));
+    }
+
+    @Override
+    public float getHeight()
+    {
+        return (float) (Math.abs(getImageWidth() * Math.sin(rotation))
+                + Math.abs(getImageHeight() * Math.cos(rotation)));
+    }
+
+    private int getImageWidth()
+    {
+        return (pdfImage.getWidth() + subsampling - 1) / subsampling;
+    }
+
+    private int getImageHeight()
+    {
+        return (pdfImage.getHeight() + subsampling - 1) / subsampling;
+    }
+
+}
@@ -1,5 +1,8 @@
 package org.fit.pdfdom.resource;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * A Base64 Encoder/Decoder.
  *
@@ -66,15 +69,44 @@ public class Base64Coder {
     * @return     A character array with the Base64 encoded data.
     */
    public static char[] encode (byte[] in, int iLen) {
+      char[] out = new char[((iLen+2)/3)*4];
+      encode(in, 0, iLen, out);
+      return out; }
+
+   /**
+    * Encodes a byte array into Base64 format and writes the result to a writer.
+    * The data is encoded in chunks, no complete copy of the encoded data is created.
+    * No blanks or line breaks are inserted.
+    * @param in   an array containing the data bytes to be encoded.
+    * @param out  the writer the Base64 encoded data is written to.
+    * @throws     IOException when writing the output fails.
+    */
+   public static void encode (byte[] in, Writer out) throws IOException {
+      final int chunk = 3 * 1024;        // a multiple of 3 so that padding only appears at the end
+      char[] buf = new char[chunk/3*4];
+      for (int ip = 0; ip < in.length; ip += chunk) {
+         int oLen = encode(in, ip, Math.min(chunk, in.length - ip), buf);
+         out.write(buf, 0, oLen); } }
+
+   /**
+    * Encodes a part of a byte array into Base64 format.
+    * No blanks or line breaks are inserted.
+    * @param in   an array containing the data bytes to be encoded.
+    * @param iOff offset of the first byte to process in <code>in</code>.
+    * @param iLen number of bytes to process in <code>in</code>.
+    * @param out  a character array the Base64 encoded data is stored to.
+    * @return     The number of characters stored to <code>out</code>.
+    */
+   private static int encode (byte[] in, int iOff, int iLen, char[] out) {
       int oDataLen = (iLen*4+2)/3;       // output length without padding
       int oLen = ((iLen+2)/3)*4;         // output length including padding
-      char[] out = new char[oLen];
-      int ip = 0;
+      int iEnd = iOff + iLen;
+      int ip = iOff;
       int op = 0;
-      while (ip < iLen) {
+      while (ip < iEnd) {
          int i0 = in[ip++] & 0xff;
-         int i1 = ip < iLen ? in[ip++] & 0xff : 0;
-         int i2 = ip < iLen ? in[ip++] & 0xff : 0;
+         int i1 = ip < iEnd ? in[ip++] & 0xff : 0;
+         int i2 = ip < iEnd ? in[ip++] & 0xff : 0;
          int o0 = i0 >>> 2;
          int o1 = ((i0 &   3) << 4) | (i1 >>> 4);
          int o2 = ((i1 & 0xf) << 2) | (i2 >>> 6);
@@ -83,7 +115,7 @@ public class Base64Coder {
          out[op++] = map1[o1];
          out[op] = op < oDataLen ? map1[o2] : '='; op++;
          out[op] = op < oDataLen ? map1[o3] : '='; op++; }
-      return out; }
+      return oLen; }
 
    /**
     * Decodes a string from Base64 format.
@@ -0,0 +1,52 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+/**
+ * The result of a font conversion stored in a {@link FontCache}.
+ */
+public class CachedFont
+{
+    private final byte[] data;
+    private final String mimeType;
+    private final String fileEnding;
+
+    public CachedFont(byte[] data, String mimeType, String fileEnding)
+    {
+        this.data = data;
+        this.mimeType = mimeType;
+        this.fileEnding = fileEnding;
+    }
+
+    /**
+     * Obtains the converted font data. The returned array must not be modified.
+     * @return the font data (empty when the font could not be converted)
+     */
+    public byte[] getData()
+    {
+        return data;
+    }
+
+    public String getMimeType()
+    {
+        return mimeType;
+    }
+
+    public String getFileEnding()
+    {
+        return fileEnding;
+    }
+}
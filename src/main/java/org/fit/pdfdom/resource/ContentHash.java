@@ -0,0 +1,72 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes used for identifying the resource data.
+ */
+public class ContentHash
+{
+    private static final String ALGORITHM = "SHA-1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash()
+    {
+    }
+
+    /**
+     * Creates a new message digest used for computing the content hashes.
+     * @return the message digest
+     */
+    public static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " digest is not available", e);
+        }
+    }
+
+    /**
+     * Computes the content hash of the given data.
+     * @param data the data
+     * @return the hexadecimal representation of the hash
+     */
+    public static String of(byte[] data)
+    {
+        return toHex(createDigest().digest(data));
+    }
+
+    /**
+     * Converts a digest value to a hexadecimal string.
+     * @param hash the digest value
+     * @return the hexadecimal string
+     */
+    public static String toHex(byte[] hash)
+    {
+        char[] ret = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++)
+        {
+            ret[2 * i] = HEX[(hash[i] >> 4) & 0x0f];
+            ret[2 * i + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(ret);
+    }
+}
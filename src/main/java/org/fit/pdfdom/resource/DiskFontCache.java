@@ -0,0 +1,244 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A font cache that stores the converted fonts in a directory so that they may be reused
+ * after restarting the application. The directory may be shared by multiple processes:
+ * the files are written to temporary files first and atomically renamed afterwards.
+ * The total size of the stored files is limited; the least recently used files are deleted
+ * when the limit is exceeded. The size is tracked in memory between the directory scans,
+ * which are repeated periodically in order to notice the files stored by other processes.
+ */
+public class DiskFontCache implements FontCache
+{
+    private static Logger log = LoggerFactory.getLogger(DiskFontCache.class);
+
+    /** The default size limit in bytes */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final String FILE_ENDING = ".font";
+    private static final String TEMP_PREFIX = "font";
+    private static final String TEMP_ENDING = ".tmp";
+    private static final int FORMAT_VERSION = 1;
+    /** The age in milliseconds after which a temporary file is considered to be left over by a failed write */
+    private static final long STALE_TEMP_AGE = 60L * 60 * 1000;
+    /** The number of stored files after which the directory is scanned again */
+    private static final int SCAN_INTERVAL = 64;
+
+    private final File directory;
+    private final long maxSize;
+    /** The estimated total size of the files or -1 when the directory has not been scanned yet */
+    private long size = -1;
+    private int storedSinceScan;
+
+    /**
+     * Creates a cache in the given directory with the default size limit.
+     * @param directory the cache directory; it is created when it does not exist
+     */
+    public DiskFontCache(File directory)
+    {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache in the given directory.
+     * @param directory the cache directory; it is created when it does not exist
+     * @param maxSize the maximal total size of the cache files in bytes
+     */
+    public DiskFontCache(File directory, long maxSize)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        directory.mkdirs();
+    }
+
+    public CachedFont get(String key)
+    {
+        File file = getFile(key);
+        if (!file.exists())
+            return null;
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                if (in.readInt() != FORMAT_VERSION)
+                    return null;
+                String mimeType = readString(in);
+                String fileEnding = readString(in);
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                //mark as recently used
+                file.setLastModified(System.currentTimeMillis());
+                return new CachedFont(data, mimeType, fileEnding);
+            }
+            finally
+            {
+                in.close();
+            }
+        } catch (IOException e) {
+            //deleted or being replaced by another process
+            log.debug("Cannot read cached font {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, CachedFont font)
+    {
+        File file = getFile(key);
+        File tmp = null;
+        long added = 0;
+        try
+        {
+            tmp = File.createTempFile(TEMP_PREFIX, TEMP_ENDING, directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, font.getMimeType());
+                writeString(out, font.getFileEnding());
+                out.writeInt(font.getData().length);
+                out.write(font.getData());
+            }
+            finally
+            {
+                out.close();
+            }
+            added = tmp.length() - file.length();
+            try
+            {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException e) {
+            log.warn("Cannot store cached font {}: {}", file, e.getMessage());
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+        fileStored(added);
+    }
+
+    /**
+     * Updates the estimated size after storing a file and scans the directory when the size
+     * exceeds the limit, when the size is not known yet or when the scan interval has elapsed.
+     * @param added the change of the total size caused by the stored file
+     */
+    private synchronized void fileStored(long added)
+    {
+        storedSinceScan++;
+        if (size >= 0)
+            size = Math.max(0, size + added);
+        if (size < 0 || size > maxSize || storedSinceScan >= SCAN_INTERVAL)
+            evict();
+    }
+
+    /**
+     * Scans the directory and deletes the least recently used files until the total size fits the limit.
+     * The stale temporary files are deleted; the remaining temporary files count toward the size.
+     */
+    protected synchronized void evict()
+    {
+        final long staleTime = System.currentTimeMillis() - STALE_TEMP_AGE;
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file)
+            {
+                if (isTempFile(file))
+                {
+                    if (file.lastModified() < staleTime && file.delete())
+                        return false;
+                    return true;
+                }
+                return file.getName().endsWith(FILE_ENDING);
+            }
+        });
+        storedSinceScan = 0;
+        if (files == null)
+            return;
+
+        size = 0;
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++)
+        {
+            size += files[i].length();
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        if (size > maxSize)
+        {
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b)
+                {
+                    return Long.compare(modified[a], modified[b]);
+                }
+            });
+            for (int i = 0; i < order.length && size > maxSize; i++)
+            {
+                File file = files[order[i]];
+                long length = file.length();
+                //the temporary files may be still being written
+                if (!isTempFile(file) && file.delete())
+                    size -= length;
+            }
+        }
+    }
+
+    private static boolean isTempFile(File file)
+    {
+        String name = file.getName();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_ENDING);
+    }
+
+    private File getFile(String key)
+    {
+        //the keys consist of the conversion kind and a hexadecimal hash
+        return new File(directory, key.replaceAll("[^A-Za-z0-9_-]", "_") + FILE_ENDING);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
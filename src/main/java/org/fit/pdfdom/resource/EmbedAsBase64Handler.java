@@ -18,16 +18,39 @@
 package org.fit.pdfdom.resource;
 
 import java.io.IOException;
+import java.io.Writer;
 
-public class EmbedAsBase64Handler implements HtmlResourceHandler
+import org.apache.commons.io.output.StringBuilderWriter;
+
+public class EmbedAsBase64Handler implements StreamingResourceHandler
 {
+    private static final String DATA_PREFIX = "data:";
+    private static final String BASE64_PREFIX = ";base64,";
+
     public String handleResource(HtmlResource resource) throws IOException
     {
-        char[] base64Data = new char[0];
         byte[] data = resource.getData();
+        String mimeType = resource.getMimeType();
+        int length = DATA_PREFIX.length() + String.valueOf(mimeType).length() + BASE64_PREFIX.length();
         if (data != null)
-            base64Data = Base64Coder.encode(data);
+            length += ((data.length + 2) / 3) * 4;
 
-        return String.format("data:%s;base64,%s", resource.getMimeType(), new String(base64Data));
+        StringBuilderWriter out = new StringBuilderWriter(length);
+        write(mimeType, data, out);
+        return out.toString();
+    }
+
+    public void writeResource(HtmlResource resource, Writer out) throws IOException
+    {
+        write(resource.getMimeType(), resource.getData(), out);
+    }
+
+    private void write(String mimeType, byte[] data, Writer out) throws IOException
+    {
+        out.write(DATA_PREFIX);
+        out.write(String.valueOf(mimeType));
+        out.write(BASE64_PREFIX);
+        if (data != null)
+            Base64Coder.encode(data, out);
     }
 }
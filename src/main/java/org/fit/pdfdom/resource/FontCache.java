@@ -0,0 +1,37 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+/**
+ * A cache of the converted font data. The implementations are used by multiple threads
+ * concurrently and they must be thread-safe.
+ */
+public interface FontCache
+{
+    /**
+     * Obtains a cached font.
+     * @param key the key identifying the source font program
+     * @return the converted font or {@code null} when the font is not present in the cache
+     */
+    CachedFont get(String key);
+
+    /**
+     * Stores a converted font to the cache.
+     * @param key the key identifying the source font program
+     * @param font the converted font
+     */
+    void put(String key, CachedFont font);
+}
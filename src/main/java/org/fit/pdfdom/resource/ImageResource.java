@@ -35,10 +35,32 @@ public class ImageResource extends HtmlResource
         this.image = image;
     }
 
+    /**
+     * Creates an image resource whose image is provided by overriding {@link #getImage()}.
+     * The subclasses must override {@link #getWidth()} and {@link #getHeight()} as well.
+     * @param name the resource name
+     */
+    protected ImageResource(String name)
+    {
+        super(name);
+
+        this.image = null;
+    }
+
+    /**
+     * Obtains the image represented by this resource.
+     * @return the image
+     * @throws IOException when the image cannot be created
+     */
+    protected BufferedImage getImage() throws IOException
+    {
+        return image;
+    }
+
     public byte[] getData() throws IOException
     {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        ImageIO.write(image, "PNG", buffer);
+        ImageIO.write(getImage(), "PNG", buffer);
 
         return buffer.toByteArray();
     }
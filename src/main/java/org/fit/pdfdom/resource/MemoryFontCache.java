@@ -0,0 +1,127 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A font cache that keeps the converted fonts in memory. The total size of the cached data is
+ * limited; the least recently used fonts are discarded when the limit is exceeded. Optionally,
+ * a slower backing cache (e.g. a {@link DiskFontCache}) may be used for the fonts that are
+ * not found in memory.
+ */
+public class MemoryFontCache implements FontCache
+{
+    /** The default size limit in bytes */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private final long maxSize;
+    private final FontCache backingCache;
+    private final LinkedHashMap<String, CachedFont> fonts;
+    private long size;
+
+    /**
+     * Creates a cache with the default size limit.
+     */
+    public MemoryFontCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache with the given size limit.
+     * @param maxSize the maximal total size of the cached font data in bytes
+     */
+    public MemoryFontCache(long maxSize)
+    {
+        this(maxSize, null);
+    }
+
+    /**
+     * Creates a cache with the given size limit and a backing cache.
+     * @param maxSize the maximal total size of the cached font data in bytes
+     * @param backingCache the cache used when a font is not found in memory. The fonts put to this
+     * cache are put to the backing cache as well.
+     */
+    public MemoryFontCache(long maxSize, FontCache backingCache)
+    {
+        this.maxSize = maxSize;
+        this.backingCache = backingCache;
+        this.fonts = new LinkedHashMap<String, CachedFont>(16, 0.75f, true);
+        this.size = 0;
+    }
+
+    public CachedFont get(String key)
+    {
+        CachedFont font = getFromMemory(key);
+        if (font == null && backingCache != null)
+        {
+            font = backingCache.get(key);
+            if (font != null)
+                putToMemory(key, font);
+        }
+        return font;
+    }
+
+    public void put(String key, CachedFont font)
+    {
+        putToMemory(key, font);
+        if (backingCache != null)
+            backingCache.put(key, font);
+    }
+
+    private synchronized CachedFont getFromMemory(String key)
+    {
+        return fonts.get(key);
+    }
+
+    private synchronized void putToMemory(String key, CachedFont font)
+    {
+        CachedFont old = fonts.put(key, font);
+        if (old != null)
+            size -= old.getData().length;
+        size += font.getData().length;
+
+        //discard the least recently used fonts
+        Iterator<Map.Entry<String, CachedFont>> it = fonts.entrySet().iterator();
+        while (size > maxSize && it.hasNext())
+        {
+            Map.Entry<String, CachedFont> eldest = it.next();
+            size -= eldest.getValue().getData().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Obtains the number of fonts in the cache.
+     * @return the number of cached fonts
+     */
+    public synchronized int getFontCount()
+    {
+        return fonts.size();
+    }
+
+    /**
+     * Obtains the total size of the cached font data.
+     * @return the size in bytes
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+}
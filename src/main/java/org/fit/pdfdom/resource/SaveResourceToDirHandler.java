@@ -21,24 +21,44 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class SaveResourceToDirHandler implements HtmlResourceHandler
 {
     public static final String DEFAULT_RESOURCE_DIR = "resources/";
 
     private final File directory;
-    private List<String> writtenFileNames = new LinkedList<String>();
+    private final boolean contentAddressed;
+    private Set<String> writtenFileNames = new HashSet<String>();
+    private Map<String, Integer> nextFileIndex = new HashMap<String, Integer>();
 
     public SaveResourceToDirHandler()
     {
-        directory = null;
+        this(null);
     }
 
     public SaveResourceToDirHandler(File directory)
+    {
+        this(directory, false);
+    }
+
+    /**
+     * Creates a handler that saves the resources to the given directory.
+     * @param directory the target directory or {@code null} for the default directory
+     * @param contentAddressed when set to {@code true}, the files are named by the hash of their contents.
+     * The resources whose file already exists in the directory (e.g. the resources shared among the documents)
+     * are not written again.
+     */
+    public SaveResourceToDirHandler(File directory, boolean contentAddressed)
     {
         this.directory = directory;
+        this.contentAddressed = contentAddressed;
     }
 
     public String handleResource(HtmlResource resource) throws IOException
@@ -47,25 +67,72 @@ public class SaveResourceToDirHandler implements HtmlResourceHandler
         if (directory != null)
             dir = directory.getPath() + "/";
 
-        String fileName = findNextUnusedFileName(resource.getName());
+        // the data conversion is the expensive part, it runs outside of the lock
+        byte[] data = resource.getData();
+
+        if (contentAddressed)
+            return saveContentAddressed(dir, resource, data);
+
+        // the allocated names are unique so the files may be written concurrently
+        String fileName = allocateFileName(resource.getName());
         String resourcePath = dir + fileName + "." + resource.getFileEnding();
 
         File file = new File(resourcePath);
-        FileUtils.writeByteArrayToFile(file, resource.getData());
+        FileUtils.writeByteArrayToFile(file, data);
 
-        writtenFileNames.add(fileName);
+        return resourcePath;
+    }
+
+    private String saveContentAddressed(String dir, HtmlResource resource, byte[] data) throws IOException
+    {
+        String resourcePath = dir + ContentHash.of(data) + "." + resource.getFileEnding();
+
+        File file = new File(resourcePath);
+        if (!file.exists())
+        {
+            //write to a temporary file first so that a partially written file is never visible
+            File parent = file.getAbsoluteFile().getParentFile();
+            parent.mkdirs();
+            File tmp = File.createTempFile("resource", ".tmp", parent);
+            try
+            {
+                FileUtils.writeByteArrayToFile(tmp, data);
+                try
+                {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                //the same file may have been created concurrently
+                if (!file.exists())
+                    throw e;
+            } finally {
+                tmp.delete();
+            }
+        }
 
         return resourcePath;
     }
 
+    private synchronized String allocateFileName(String name)
+    {
+        String fileName = findNextUnusedFileName(name);
+        writtenFileNames.add(fileName);
+        return fileName;
+    }
+
     private String findNextUnusedFileName(String fileName)
     {
-        int i = 1;
-        String usedName = fileName;
+        // continue with the next index used for the same name
+        Integer next = nextFileIndex.get(fileName);
+        int i = next == null ? 0 : next;
+        String usedName = i == 0 ? fileName : fileName + i;
         while (writtenFileNames.contains(usedName)) {
-            usedName = fileName + i;
             i++;
+            usedName = fileName + i;
         }
+        nextFileIndex.put(fileName, i + 1);
 
         return usedName;
     }
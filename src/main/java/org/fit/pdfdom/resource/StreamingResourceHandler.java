@@ -0,0 +1,34 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom.resource;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A resource handler that is able to write the resource URI directly to an output without
+ * creating the complete URI string in memory.
+ */
+public interface StreamingResourceHandler extends HtmlResourceHandler
+{
+    /**
+     * Writes the URI to be used in generated HTML resource elements to an output.
+     * @param resource the resource to be handled
+     * @param out the output the URI is written to
+     * @throws IOException
+     */
+    void writeResource(HtmlResource resource, Writer out) throws IOException;
+}
@@ -0,0 +1,42 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom;
+
+import org.fit.pdfdom.resource.Base64Coder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+public class TestBase64Coder
+{
+    @Test
+    public void givenDataAroundChunkSize_whenEncodedToWriter_thenSameAsArrayEncoding() throws Exception
+    {
+        Random random = new Random(42);
+        for (int length : new int[] {0, 1, 2, 3071, 3072, 3073, 6145})
+        {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            StringWriter out = new StringWriter();
+            Base64Coder.encode(data, out);
+
+            Assert.assertEquals("length " + length, new String(Base64Coder.encode(data)), out.toString());
+        }
+    }
+}
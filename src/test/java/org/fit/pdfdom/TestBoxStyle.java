@@ -0,0 +1,79 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBoxStyle
+{
+    @Test
+    public void givenStyleCopy_whenModified_thenSourceUnchanged() throws Exception
+    {
+        BoxStyle src = createStyle();
+        BoxStyle copy = new BoxStyle(src);
+        copy.setFontWeight("bold");
+        copy.setColor("#ff0000");
+
+        Assert.assertEquals("normal", src.getFontWeight());
+        Assert.assertEquals("#000000", src.getColor());
+        Assert.assertNotEquals(src, copy);
+        copy.setFontWeight("normal");
+        copy.setColor("#000000");
+        Assert.assertEquals(src, copy);
+        Assert.assertEquals(src.hashCode(), copy.hashCode());
+    }
+
+    @Test
+    public void givenStylesAtDifferentPositions_whenCompared_thenEqualAndPositionOnlyInCss() throws Exception
+    {
+        BoxStyle first = createStyle();
+        BoxStyle second = createStyle();
+        second.setLeft(100);
+        second.setTop(200);
+
+        Assert.assertEquals(first, second);
+        String css = first.toString(200, 100, 12);
+        Assert.assertTrue(css.startsWith("top:200.0pt;left:100.0pt;line-height:12.0pt;"));
+        Assert.assertTrue(css.endsWith(first.getFontCss()));
+        Assert.assertEquals(css, second.toString(200, 100, 12));
+    }
+
+    @Test
+    public void givenStyleClassCreated_whenStyleModifiedLater_thenClassNotAffected() throws Exception
+    {
+        PDFDomTree tree = new PDFDomTree();
+        BoxStyle bstyle = createStyle();
+        String plainClass = tree.getStyleClass(bstyle);
+        bstyle.setFontStyle("italic");
+        String italicClass = tree.getStyleClass(bstyle);
+
+        Assert.assertNotEquals(plainClass, italicClass);
+        Assert.assertEquals(plainClass, tree.getStyleClass(createStyle()));
+        Assert.assertEquals(2, tree.styleClasses.size());
+    }
+
+    private static BoxStyle createStyle()
+    {
+        BoxStyle ret = new BoxStyle("pt");
+        ret.setFontFamily("Helvetica");
+        ret.setFontSize(12);
+        ret.setFontWeight("normal");
+        ret.setFontStyle("normal");
+        ret.setColor("#000000");
+        return ret;
+    }
+}
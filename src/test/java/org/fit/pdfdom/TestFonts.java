@@ -1,6 +1,17 @@
 package org.fit.pdfdom;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.fit.pdfdom.resource.CachedFont;
+import org.fit.pdfdom.resource.DiskFontCache;
+import org.fit.pdfdom.resource.MemoryFontCache;
 import org.hamcrest.Factory;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -13,6 +24,7 @@ import org.mabb.fontverter.woff.WoffParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -96,6 +108,209 @@ public class TestFonts
         Assert.assertThat(style.outerHtml(), not(containsString("@font-face")));
     }
 
+    @Test
+    public void convertPdfTwice_withSharedFontCache_thenFontConvertedOnceAndSameFontFaces() throws Exception
+    {
+        MemoryFontCache cache = new MemoryFontCache();
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setFontCache(cache);
+
+        Document first = TestUtils.parseWithPdfDomTree("/fonts/bare-cff.pdf", config);
+        int cachedFonts = cache.getFontCount();
+        Document second = TestUtils.parseWithPdfDomTree("/fonts/bare-cff.pdf", config);
+
+        Assert.assertThat(cachedFonts, greaterThan(0));
+        Assert.assertEquals(cachedFonts, cache.getFontCount());
+        Assert.assertEquals(first.select("style").outerHtml(), second.select("style").outerHtml());
+    }
+
+    @Test
+    public void convertPdfTwice_withDiskFontCache_thenFontStoredAndReused() throws Exception
+    {
+        File cacheDir = folder.newFolder("font-cache");
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setFontCache(new DiskFontCache(cacheDir));
+        Document first = TestUtils.parseWithPdfDomTree("/fonts/bare-cff.pdf", config);
+        int cacheFiles = cacheDir.list().length;
+
+        config.setFontCache(new DiskFontCache(cacheDir));
+        Document second = TestUtils.parseWithPdfDomTree("/fonts/bare-cff.pdf", config);
+
+        Assert.assertThat(cacheFiles, greaterThan(0));
+        Assert.assertEquals(cacheFiles, cacheDir.list().length);
+        Assert.assertEquals(first.select("style").outerHtml(), second.select("style").outerHtml());
+    }
+
+    @Test
+    public void givenStaleTempFile_whenFontStoredToDiskFontCache_thenTempFileDeleted() throws Exception
+    {
+        File cacheDir = folder.newFolder("font-cache");
+        File staleTmp = new File(cacheDir, "font123.tmp");
+        File freshTmp = new File(cacheDir, "font456.tmp");
+        FileUtils.write(staleTmp, "stale", "utf-8");
+        FileUtils.write(freshTmp, "fresh", "utf-8");
+        staleTmp.setLastModified(System.currentTimeMillis() - 24L * 60 * 60 * 1000);
+
+        DiskFontCache cache = new DiskFontCache(cacheDir);
+        cache.put("woff_0123", new CachedFont(new byte[] {1, 2, 3}, "font/woff", "woff"));
+
+        Assert.assertFalse(staleTmp.exists());
+        Assert.assertTrue(freshTmp.exists());
+        Assert.assertNotNull(cache.get("woff_0123"));
+    }
+
+    @Test
+    public void givenUnusableFontWithSameFamily_whenFontsUsed_thenUsableFontNameNotShifted() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        try
+        {
+            PDFont usable = loadTestFont(pdf);
+            PDFont unusable = createFontWithoutProgram(usable.getName());
+
+            FontTable reference = new FontTable();
+            reference.addEntry(usable);
+            String expectedName = reference.useFont(usable);
+
+            FontTable table = new FontTable();
+            table.addEntry(unusable);
+            table.addEntry(usable);
+
+            Assert.assertNull(table.getUsedName(usable));
+            Assert.assertNull(table.useFont(unusable));
+            Assert.assertNotNull(expectedName);
+            Assert.assertEquals(expectedName, table.useFont(usable));
+            Assert.assertEquals(1, table.getUsedEntries().size());
+        }
+        finally
+        {
+            pdf.close();
+        }
+    }
+
+    @Test
+    public void givenFontNotUsedByText_whenAddedToTable_thenFontNotConverted() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        try
+        {
+            PDFont font = loadTestFont(pdf);
+            FontTable table = new FontTable();
+            MemoryFontCache cache = new MemoryFontCache();
+            table.setFontCache(cache);
+            table.addEntry(font);
+
+            Assert.assertTrue(table.getUsedEntries().isEmpty());
+            Assert.assertEquals(0, cache.getFontCount());
+
+            table.useFont(font);
+            Assert.assertEquals(1, table.getUsedEntries().size());
+            Assert.assertEquals(1, cache.getFontCount());
+        }
+        finally
+        {
+            pdf.close();
+        }
+    }
+
+    @Test
+    public void givenFontLookedUpBeforeAdded_whenAddedToTable_thenFontFound() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        try
+        {
+            PDFont font = loadTestFont(pdf);
+            FontTable table = new FontTable();
+
+            Assert.assertNull(table.get(font));
+            table.addEntry(font);
+
+            Assert.assertNotNull(table.get(font));
+        }
+        finally
+        {
+            pdf.close();
+        }
+    }
+
+    @Test
+    public void givenSameFontInDifferentDictionaries_whenLookedUp_thenSameEntryFound() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        try
+        {
+            PDFont font = loadTestFont(pdf);
+            PDFont sameFont = loadTestFont(pdf);
+            FontTable table = new FontTable();
+            table.addEntry(font);
+            table.addEntry(sameFont);
+
+            Assert.assertNotSame(font.getCOSObject(), sameFont.getCOSObject());
+            Assert.assertSame(table.get(font), table.get(sameFont));
+            Assert.assertEquals(1, table.getEntries().size());
+
+            table.clearFontIndex();
+            Assert.assertSame(table.get(font), table.get(sameFont));
+        }
+        finally
+        {
+            pdf.close();
+        }
+    }
+
+    @Test
+    public void givenFontsWithAndWithoutDescriptor_whenMetricsCreated_thenScaledValuesOrZero() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        try
+        {
+            PDFont font = loadTestFont(pdf);
+            PDFontDescriptor fd = font.getFontDescriptor();
+            TextMetrics.FontMetrics metrics = new TextMetrics.FontMetrics(font);
+            Assert.assertEquals(fd.getAscent() / 100, metrics.getAscent(10), 0.001f);
+            Assert.assertEquals(fd.getDescent() / 50, metrics.getDescent(20), 0.001f);
+
+            COSDictionary dict = new COSDictionary();
+            dict.setItem(COSName.TYPE, COSName.FONT);
+            dict.setItem(COSName.SUBTYPE, COSName.TRUE_TYPE);
+            dict.setName(COSName.BASE_FONT, "NoDescriptor");
+            TextMetrics.FontMetrics missing = new TextMetrics.FontMetrics(new PDTrueTypeFont(dict));
+            Assert.assertEquals(0, missing.getAscent(10), 0f);
+            Assert.assertEquals(0, missing.getDescent(10), 0f);
+        }
+        finally
+        {
+            pdf.close();
+        }
+    }
+
+    private static PDFont loadTestFont(PDDocument pdf) throws IOException
+    {
+        InputStream is = PDDocument.class.getResourceAsStream("/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf");
+        try
+        {
+            return PDType0Font.load(pdf, is, false);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    private static PDFont createFontWithoutProgram(String name) throws IOException
+    {
+        COSDictionary descriptor = new COSDictionary();
+        descriptor.setItem(COSName.TYPE, COSName.FONT_DESC);
+        descriptor.setName(COSName.FONT_NAME, name);
+        descriptor.setInt(COSName.FLAGS, 32);
+        COSDictionary dict = new COSDictionary();
+        dict.setItem(COSName.TYPE, COSName.FONT);
+        dict.setItem(COSName.SUBTYPE, COSName.TRUE_TYPE);
+        dict.setName(COSName.BASE_FONT, name);
+        dict.setItem(COSName.FONT_DESC, descriptor);
+        return new PDTrueTypeFont(dict);
+    }
+
     private Document convertWithFontSaveToDirMode(String pdf) throws Exception
     {
         File fontDir = getExtractDir();
@@ -17,14 +17,35 @@
 
 package org.fit.pdfdom;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.fit.pdfdom.resource.HtmlResource;
+import org.fit.pdfdom.resource.HtmlResourceHandler;
+import org.fit.pdfdom.resource.ImageResource;
 import org.fit.pdfdom.resource.SaveResourceToDirHandler;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fit.pdfdom.TestUtils.getOutputEnabled;
 
@@ -74,6 +95,212 @@ public class TestImages
         Assert.assertTrue(tempFontFile2.exists());
     }
 
+    @Test
+    public void givenPdfWithImages_whenImageDataDisabled_thenImageHandlerNotUsed() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setImageHandler(new SaveResourceToDirHandler(getExtractDir()));
+
+        InputStream is = TestImages.class.getResourceAsStream("/images.pdf");
+        PDDocument pdf = PDDocument.load(is);
+        PDFDomTree parser = new PDFDomTree(config);
+        parser.setDisableImageData(true);
+        Document html = Jsoup.parse(parser.getText(pdf));
+        pdf.close();
+        is.close();
+        File tempFontFile = new File(getFullExtractPath() + "Untitled.png");
+
+        Assert.assertFalse(html.select("img").isEmpty());
+        Assert.assertFalse(tempFontFile.exists());
+    }
+
+    @Test
+    public void givenPdfWithJpegImages_whenConvertedWithJpegPassthrough_thenJpegDataEmbedded() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setJpegPassthrough(true);
+
+        Document html = TestUtils.parseWithPdfDomTree("images.pdf", config);
+
+        Assert.assertFalse(html.select("img").isEmpty());
+        for (Element img : html.select("img"))
+            Assert.assertTrue(img.attr("src").startsWith("data:image/jpeg;base64,/9j/"));
+    }
+
+    @Test
+    public void givenPdfWithImages_whenConvertedWithLowImageDpi_thenSmallerImagesEmbedded() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setImageDpi(10);
+
+        Document fullHtml = TestUtils.parseWithPdfDomTree("images.pdf");
+        Document reducedHtml = TestUtils.parseWithPdfDomTree("images.pdf", config);
+
+        Assert.assertEquals(fullHtml.select("img").size(), reducedHtml.select("img").size());
+        Assert.assertTrue(getTotalSourceLength(reducedHtml) < getTotalSourceLength(fullHtml));
+    }
+
+    @Test
+    public void givenTwoConversions_whenConvertedWithContentAddressedHandler_thenImagesSavedOnce() throws Exception
+    {
+        File dir = folder.newFolder("content-addressed");
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+
+        config.setImageHandler(new SaveResourceToDirHandler(dir, true));
+        Document first = TestUtils.parseWithPdfDomTree("images.pdf", config);
+        int fileCount = dir.list().length;
+        config.setImageHandler(new SaveResourceToDirHandler(dir, true));
+        Document second = TestUtils.parseWithPdfDomTree("images.pdf", config);
+
+        Assert.assertTrue(fileCount > 0);
+        Assert.assertEquals(fileCount, dir.list().length);
+        Assert.assertEquals(first.select("img").outerHtml(), second.select("img").outerHtml());
+    }
+
+    @Test
+    public void givenImageRepeatedOnAllPages_whenConverted_thenSourceProducedOnceAndPageSourcesReleased() throws Exception
+    {
+        final HtmlResourceHandler base64 = PDFDomTreeConfig.embedAsBase64();
+        final AtomicInteger handled = new AtomicInteger();
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setImageHandler(new HtmlResourceHandler() {
+            public String handleResource(HtmlResource resource) throws IOException
+            {
+                handled.incrementAndGet();
+                return base64.handleResource(resource);
+            }
+        });
+        final List<Integer> retainedSources = new ArrayList<Integer>();
+        PDFDomTree parser = new PDFDomTree(config) {
+            @Override
+            protected void startNewPage()
+            {
+                retainedSources.add(imageSources.size());
+                super.startNewPage();
+            }
+        };
+
+        PDDocument pdf = createRepeatedImageDocument(3);
+        Document html = Jsoup.parse(parser.getText(pdf));
+        pdf.close();
+
+        Elements images = html.select("img");
+        Assert.assertEquals(7, images.size());
+        //the repeated image and the single image on the second page
+        Assert.assertEquals(2, handled.get());
+        Assert.assertEquals(images.get(0).attr("src"), images.get(6).attr("src"));
+        Assert.assertEquals(Arrays.asList(0, 0, 0), retainedSources);
+    }
+
+    @Test
+    public void givenMirroredImage_whenConverted_thenMirroringKeptInTransform() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        PDImageXObject image = LosslessFactory.createFromImage(pdf, createImage(Color.RED));
+        PDPage page = new PDPage();
+        pdf.addPage(page);
+        PDPageContentStream content = new PDPageContentStream(pdf, page);
+        content.drawImage(image, 200, 400, 80, 40);
+        //the same box mirrored horizontally
+        content.drawImage(image, new Matrix(-80, 0, 0, 40, 280, 400));
+        content.close();
+        Document html = Jsoup.parse(new PDFDomTree().getText(pdf));
+        pdf.close();
+
+        Elements images = html.select("img");
+        Assert.assertEquals(2, images.size());
+        String plain = images.get(0).attr("style");
+        String mirrored = images.get(1).attr("style");
+        Assert.assertFalse(plain.contains("transform"));
+        //rotate(180deg) scaleY(-1) is the horizontal mirror
+        Assert.assertTrue(mirrored.contains("scaleY(-1)"));
+        Assert.assertTrue(mirrored.contains("rotate(180.0deg)") || mirrored.contains("rotate(-180.0deg)"));
+        //the image box is not moved
+        Assert.assertEquals(plain, mirrored.substring(0, mirrored.indexOf("transform:")));
+    }
+
+    @Test
+    public void givenImageAtKnownPosition_whenConverted_thenBoxFromDeclaredSizeAndImageDecodedOnlyForData() throws Exception
+    {
+        for (boolean disableImageData : new boolean[] {false, true})
+        {
+            PDDocument pdf = new PDDocument();
+            PDImageXObject image = LosslessFactory.createFromImage(pdf, createImage(Color.RED));
+            PDPage page = new PDPage();
+            pdf.addPage(page);
+            PDPageContentStream content = new PDPageContentStream(pdf, page);
+            content.drawImage(image, 100, 500, 60, 30);
+            content.close();
+
+            final AtomicInteger decoded = new AtomicInteger();
+            PDFDomTree parser = new PDFDomTree() {
+                @Override
+                protected ImageResource createImageResource(PDImageXObject pdfImage, double rotation, int subsampling)
+                {
+                    return new XObjectImageResource(getTitle(), pdfImage, rotation, subsampling) {
+                        @Override
+                        protected BufferedImage getImage() throws IOException
+                        {
+                            decoded.incrementAndGet();
+                            return super.getImage();
+                        }
+                    };
+                }
+            };
+            parser.setDisableImageData(disableImageData);
+            Document html = Jsoup.parse(parser.getText(pdf));
+            pdf.close();
+
+            //the letter page is 792pt high, the image top is at 530pt from the bottom
+            Element img = html.select("img").first();
+            Assert.assertNotNull(img);
+            Assert.assertTrue(img.attr("style").startsWith("position:absolute;left:100.0pt;top:262.0pt;width:60.0pt;height:30.0pt;"));
+            //the position is computed without decoding, the data is decoded once when used
+            Assert.assertEquals(disableImageData ? 0 : 1, decoded.get());
+        }
+    }
+
+    /**
+     * Creates a document where the same image is drawn twice on each page and the second page
+     * contains another image drawn once.
+     */
+    private static PDDocument createRepeatedImageDocument(int pages) throws IOException
+    {
+        PDDocument pdf = new PDDocument();
+        PDImageXObject logo = LosslessFactory.createFromImage(pdf, createImage(Color.RED));
+        PDImageXObject single = LosslessFactory.createFromImage(pdf, createImage(Color.BLUE));
+        for (int i = 0; i < pages; i++)
+        {
+            PDPage page = new PDPage();
+            pdf.addPage(page);
+            PDPageContentStream content = new PDPageContentStream(pdf, page);
+            content.drawImage(logo, 50, 700, 40, 40);
+            content.drawImage(logo, 500, 50, 40, 40);
+            if (i == 1)
+                content.drawImage(single, 200, 400, 80, 80);
+            content.close();
+        }
+        return pdf;
+    }
+
+    private static BufferedImage createImage(Color color)
+    {
+        BufferedImage image = new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 20, 20);
+        g.dispose();
+        return image;
+    }
+
+    private int getTotalSourceLength(Document html)
+    {
+        int length = 0;
+        for (Element img : html.select("img"))
+            length += img.attr("src").length();
+        return length;
+    }
+
     private File getExtractDir() throws IOException
     {
         return getOutputEnabled() ? new File(EXTRACT_DIR) : folder.newFolder(EXTRACT_DIR);
@@ -2,10 +2,15 @@ package org.fit.pdfdom;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.hamcrest.Matchers;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -13,10 +18,17 @@ import static org.fit.pdfdom.TestUtils.getOutputEnabled;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.core.IsNot.not;
 
+import java.awt.Color;
 import java.io.File;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.hamcrest.core.AnyOf.anyOf;
 
@@ -85,6 +97,187 @@ public class TestPDFDomTree
         Assert.assertThat(htmlText, not(containsString("#3")));
     }
 
+    @Test
+    public void givenMultiPagePdf_withPageListener_allPagesDeliveredAndReleased() throws Exception
+    {
+        final List<Integer> pageNumbers = new ArrayList<Integer>();
+        final List<String> pageTexts = new ArrayList<String>();
+
+        InputStream is = TestUtils.class.getResourceAsStream(testPath + "3-page-document.pdf");
+        PDDocument pdf = PDDocument.load(is);
+        PDFDomTree parser = new PDFDomTree();
+        parser.setPageListener(new PageListener() {
+            public void pageFinished(int pageNumber, org.w3c.dom.Element page, PDPage pdpage)
+            {
+                pageNumbers.add(pageNumber);
+                pageTexts.add(page.getTextContent());
+            }
+        });
+        org.w3c.dom.Document dom = parser.createDOM(pdf);
+        pdf.close();
+        is.close();
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), pageNumbers);
+        Assert.assertThat(pageTexts.get(1), containsString("#2"));
+        Assert.assertEquals(0, dom.getElementsByTagName("body").item(0).getChildNodes().getLength());
+    }
+
+    @Test
+    public void givenMultiPagePdf_convertInParallel_pagesJoinedInOrder() throws Exception
+    {
+        File file = new File(TestUtils.class.getResource(testPath + "3-page-document.pdf").toURI());
+        ParallelPDFDomTree parser = new ParallelPDFDomTree(null, 3);
+
+        Writer output = new StringWriter();
+        parser.writeText(file, output);
+        Document html = Jsoup.parse(output.toString());
+
+        Elements pages = html.select("div.page");
+        Assert.assertEquals(3, pages.size());
+        for (int i = 0; i < pages.size(); i++)
+        {
+            Assert.assertEquals("page_" + i, pages.get(i).attr("id"));
+            Assert.assertThat(pages.get(i).text(), containsString("#" + (i + 1)));
+        }
+        List<String> textIds = html.select("div.p").eachAttr("id");
+        Assert.assertEquals(textIds.size(), new HashSet<String>(textIds).size());
+    }
+
+    @Test
+    public void givenMultiPagePdf_convertInParallel_sameTextStylesAsSequential() throws Exception
+    {
+        Document expected = TestUtils.parseWithPdfDomTree(testPath + "3-page-document.pdf");
+
+        File file = new File(TestUtils.class.getResource(testPath + "3-page-document.pdf").toURI());
+        ParallelPDFDomTree parser = new ParallelPDFDomTree(null, 3);
+        Writer output = new StringWriter();
+        parser.writeText(file, output);
+        Document html = Jsoup.parse(output.toString());
+
+        Assert.assertEquals(expected.select("div.p").eachAttr("style"), html.select("div.p").eachAttr("style"));
+        Assert.assertEquals(expected.select("style").html(), html.select("style").html());
+    }
+
+    @Test
+    public void givenMultiPagePdf_withPageListener_convertInParallel_pagesDeliveredInOrder() throws Exception
+    {
+        final List<Integer> pageNumbers = new ArrayList<Integer>();
+        final List<String> pageTexts = new ArrayList<String>();
+
+        File file = new File(TestUtils.class.getResource(testPath + "3-page-document.pdf").toURI());
+        ParallelPDFDomTree parser = new ParallelPDFDomTree(null, 3);
+        parser.setPageListener(new PageListener() {
+            public void pageFinished(int pageNumber, org.w3c.dom.Element page, PDPage pdpage)
+            {
+                pageNumbers.add(pageNumber);
+                pageTexts.add(page.getTextContent());
+            }
+        });
+        org.w3c.dom.Document dom = parser.createDOM(file);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), pageNumbers);
+        for (int i = 0; i < pageTexts.size(); i++)
+            Assert.assertThat(pageTexts.get(i), containsString("#" + (i + 1)));
+        Assert.assertEquals(0, dom.getElementsByTagName("body").item(0).getChildNodes().getLength());
+    }
+
+    @Test
+    public void givenStyleClassesEnabled_textStylesMovedToGlobalStyle() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setStyleClasses(true);
+        Document html = TestUtils.parseWithPdfDomTree(testPath + "3-page-document.pdf", config);
+        String globalStyle = html.select("style").html();
+
+        Elements texts = html.select("div.p");
+        Assert.assertFalse(texts.isEmpty());
+        for (Element text : texts)
+        {
+            Assert.assertThat(text.attr("style"), not(containsString("font-size")));
+            Assert.assertEquals(2, text.classNames().size());
+            for (String cls : text.classNames())
+                if (!cls.equals("p"))
+                    Assert.assertThat(globalStyle, containsString("." + cls + "{"));
+        }
+    }
+
+    @Test
+    public void givenStyleClassesEnabled_convertInParallel_sameStylesAsSequential() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setStyleClasses(true);
+        Document expected = TestUtils.parseWithPdfDomTree(testPath + "3-page-document.pdf", config);
+
+        File file = new File(TestUtils.class.getResource(testPath + "3-page-document.pdf").toURI());
+        ParallelPDFDomTree parser = new ParallelPDFDomTree(config, 3);
+        Writer output = new StringWriter();
+        parser.writeText(file, output);
+        Document html = Jsoup.parse(output.toString());
+
+        Assert.assertEquals(expected.select("div.p").eachAttr("class"), html.select("div.p").eachAttr("class"));
+    }
+
+    @Test
+    public void givenTextInTwoRepeatedFonts_whenConverted_thenFontStylesDerivedOncePerFont() throws Exception
+    {
+        PDDocument pdf = createStyledTextDocument();
+        PDFDomTree parser = new PDFDomTree();
+        Document html = Jsoup.parse(parser.getText(pdf));
+        pdf.close();
+
+        for (String text : new String[] {"BoldA", "BoldB"})
+        {
+            String style = findTextBox(html, text).attr("style");
+            Assert.assertThat(style, containsString("font-family:Helvetica;"));
+            Assert.assertThat(style, containsString("font-weight:bold;"));
+            Assert.assertThat(style, not(containsString("font-style")));
+        }
+        for (String text : new String[] {"ItalicA", "ItalicB"})
+        {
+            String style = findTextBox(html, text).attr("style");
+            Assert.assertThat(style, containsString("font-family:Times;"));
+            Assert.assertThat(style, containsString("font-style:italic;"));
+            Assert.assertThat(style, not(containsString("font-weight")));
+        }
+        Assert.assertEquals(2, parser.fontStyles.size());
+    }
+
+    @Test
+    public void givenTextAndPathInRepeatedColors_whenConverted_thenColorsConvertedOncePerColor() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setSvgPaths(true);
+        PDDocument pdf = createStyledTextDocument();
+        PDFDomTree parser = new PDFDomTree(config);
+        Document html = Jsoup.parse(parser.getText(pdf));
+        pdf.close();
+
+        Assert.assertThat(findTextBox(html, "BoldA").attr("style"), containsString("color:#ff0000;"));
+        Assert.assertThat(findTextBox(html, "BoldB").attr("style"), containsString("color:#ff0000;"));
+        Assert.assertThat(findTextBox(html, "ItalicA").attr("style"), containsString("color:#0000ff;"));
+        Assert.assertThat(findTextBox(html, "ItalicB").attr("style"), containsString("color:#0000ff;"));
+        Assert.assertEquals("#ff0000", html.select("div.page > svg path").first().attr("fill"));
+        //red and blue fill, black (gray) stroke; the repeated colors and the path fill are cache hits
+        Assert.assertEquals(3, parser.colorCache.size());
+    }
+
+    @Test
+    public void givenTextInTwoSizes_whenConverted_thenLineHeightsScaleWithFontSize() throws Exception
+    {
+        PDDocument pdf = createStyledTextDocument();
+        PDFDomTree parser = new PDFDomTree();
+        Document html = Jsoup.parse(parser.getText(pdf));
+        pdf.close();
+
+        Assert.assertEquals(getLineHeight(findTextBox(html, "BoldA")), getLineHeight(findTextBox(html, "BoldB")), 0.001);
+        double small = getLineHeight(findTextBox(html, "ItalicA"));
+        double large = getLineHeight(findTextBox(html, "ItalicB"));
+        Assert.assertTrue(small > 0);
+        Assert.assertEquals(2.0, large / small, 0.05);
+        //the metrics are obtained once for each font
+        Assert.assertEquals(2, parser.fontMetrics.size());
+    }
+
     public static Document convertWithPageRange(String resource, int start, int end) throws Exception
     {
         InputStream is = TestUtils.class.getResourceAsStream(resource);
@@ -112,4 +305,55 @@ public class TestPDFDomTree
 
         return Jsoup.parse(htmlOutput);
     }
+
+    /**
+     * Creates a single page document with text lines in two standard fonts. Each font is used
+     * twice, the last line uses a double font size. The Helvetica lines and a rectangle below
+     * the text are red, the Times lines are blue.
+     */
+    private static PDDocument createStyledTextDocument() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        PDPage page = new PDPage();
+        pdf.addPage(page);
+        PDPageContentStream content = new PDPageContentStream(pdf, page);
+        showText(content, PDType1Font.HELVETICA_BOLD, 12, Color.RED, 50, 700, "BoldA");
+        showText(content, PDType1Font.TIMES_ITALIC, 12, Color.BLUE, 50, 650, "ItalicA");
+        showText(content, PDType1Font.HELVETICA_BOLD, 12, Color.RED, 50, 600, "BoldB");
+        showText(content, PDType1Font.TIMES_ITALIC, 24, Color.BLUE, 50, 550, "ItalicB");
+        content.setNonStrokingColor(Color.RED);
+        content.addRect(50, 400, 100, 50);
+        content.fill();
+        content.close();
+        return pdf;
+    }
+
+    private static void showText(PDPageContentStream content, PDFont font, float size, Color color,
+            float x, float y, String text) throws Exception
+    {
+        content.setNonStrokingColor(color);
+        content.beginText();
+        content.setFont(font, size);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private static Element findTextBox(Document html, String text)
+    {
+        for (Element box : html.select("div.p"))
+        {
+            if (box.text().equals(text))
+                return box;
+        }
+        Assert.fail("Text box not found: " + text);
+        return null;
+    }
+
+    private static double getLineHeight(Element box)
+    {
+        Matcher matcher = Pattern.compile("line-height:([^;]*)pt;").matcher(box.attr("style"));
+        Assert.assertTrue(matcher.find());
+        return Double.parseDouble(matcher.group(1));
+    }
 }
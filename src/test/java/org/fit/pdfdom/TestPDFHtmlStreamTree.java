@@ -0,0 +1,111 @@
+package org.fit.pdfdom;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+public class TestPDFHtmlStreamTree
+{
+    @Test
+    public void givenMultiPagePdf_whenStreamed_thenSameTextBoxesAsDomTree() throws Exception
+    {
+        assertSameContents("/3-page-document.pdf");
+    }
+
+    @Test
+    public void givenPdfWithImages_whenStreamed_thenSameBoxesAndImagesAsDomTree() throws Exception
+    {
+        assertSameContents("/images.pdf");
+    }
+
+    @Test
+    public void givenPdfWithFont_whenStreamed_thenFontFaceIsWritten() throws Exception
+    {
+        Document html = parseWithStreamTree("/fonts/bare-cff.pdf");
+
+        Assert.assertTrue(html.select("style").outerHtml().contains("@font-face"));
+    }
+
+    @Test
+    public void givenMultiPagePdfWithFonts_whenStreamed_thenStylesOnlyInHeadAndAfterAllPages() throws Exception
+    {
+        Document html = parseWithStreamTree("/3-page-document.pdf");
+
+        Elements heads = html.select("html > head");
+        Assert.assertEquals(1, heads.size());
+        Assert.assertEquals(1, heads.first().select("title").size());
+        Assert.assertEquals(1, heads.first().select("style").size());
+
+        Element body = html.body();
+        Elements children = body.children();
+        Assert.assertEquals(1, body.select("style").size());
+        Element trailingStyle = children.last();
+        Assert.assertEquals("style", trailingStyle.tagName());
+        Assert.assertTrue(trailingStyle.data().contains("@font-face"));
+        for (int i = 0; i < children.size() - 1; i++)
+            Assert.assertTrue(children.get(i).hasClass("page"));
+        Assert.assertEquals(3, body.select("div.page").size());
+    }
+
+    @Test
+    public void givenPdfWithImages_whenStreamed_thenEmbeddedImageCanBeDecoded() throws Exception
+    {
+        Document html = parseWithStreamTree("/images.pdf");
+        Element image = html.select("img").first();
+
+        Assert.assertNotNull(image);
+        String src = image.attr("src");
+        Assert.assertTrue(src.startsWith("data:image/"));
+        byte[] imageData = Base64.decodeBase64(src.substring(src.indexOf(";base64,") + 8));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(imageData));
+
+        Assert.assertNotNull(decoded);
+        Assert.assertTrue(decoded.getWidth() > 0 && decoded.getHeight() > 0);
+    }
+
+    private void assertSameContents(String resource) throws Exception
+    {
+        Document domHtml = TestUtils.parseWithPdfDomTree(resource);
+        Document streamHtml = parseWithStreamTree(resource);
+
+        assertSameElements(domHtml.select("div.page"), streamHtml.select("div.page"));
+        assertSameElements(domHtml.select("div.p"), streamHtml.select("div.p"));
+        assertSameElements(domHtml.select("div.r"), streamHtml.select("div.r"));
+        assertSameElements(domHtml.select("img"), streamHtml.select("img"));
+    }
+
+    private void assertSameElements(Elements expected, Elements actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertEquals(expected.get(i).attributes(), actual.get(i).attributes());
+            Assert.assertEquals(expected.get(i).ownText(), actual.get(i).ownText());
+        }
+    }
+
+    private Document parseWithStreamTree(String resource) throws Exception
+    {
+        InputStream is = TestUtils.class.getResourceAsStream(resource);
+        PDDocument pdf = PDDocument.load(is);
+        PDFHtmlStreamTree parser = new PDFHtmlStreamTree();
+
+        StringWriter output = new StringWriter();
+        parser.writeText(pdf, output);
+        pdf.close();
+        is.close();
+
+        return Jsoup.parse(output.toString());
+    }
+}
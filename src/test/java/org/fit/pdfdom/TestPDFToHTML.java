@@ -0,0 +1,98 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+
+public class TestPDFToHTML
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDir;
+
+    @Before
+    public void createInputFiles() throws Exception
+    {
+        inputDir = folder.newFolder("input");
+        copyResource("/3-page-document.pdf", new File(inputDir, "report.pdf"));
+        copyResource("/3-page-document.pdf", new File(inputDir, "sub/report.pdf"));
+        FileUtils.write(new File(inputDir, "broken.pdf"), "this is not a PDF document", "utf-8");
+    }
+
+    @Test
+    public void givenDirectoryWithBrokenFile_whenConvertedInBatch_thenOtherFilesConvertedAndFailureCounted() throws Exception
+    {
+        File outputDir = new File(folder.getRoot(), "output");
+        int failed = PDFToHTML.convertBatch(new String[] {"-batch", "-threads=2", "-odir=" + outputDir.getPath(),
+                inputDir.getPath()});
+
+        Assert.assertEquals(1, failed);
+        Assert.assertTrue(new File(outputDir, "report.html").length() > 0);
+        Assert.assertTrue(new File(outputDir, "sub/report.html").length() > 0);
+    }
+
+    @Test
+    public void givenGlobPattern_whenConvertedInBatch_thenFilesInBaseDirectoryMatched() throws Exception
+    {
+        File outputDir = new File(folder.getRoot(), "output");
+        int failed = PDFToHTML.convertBatch(new String[] {"-batch", "-odir=" + outputDir.getPath(),
+                inputDir.getPath() + "/**/report.pdf"});
+
+        Assert.assertEquals(0, failed);
+        Assert.assertTrue(new File(outputDir, "report.html").exists());
+        Assert.assertTrue(new File(outputDir, "sub/report.html").exists());
+    }
+
+    @Test
+    public void givenSameFileNames_whenConvertedInBatchToSameDirectory_thenCollisionReportedAsFailure() throws Exception
+    {
+        File outputDir = new File(folder.getRoot(), "output");
+        int failed = PDFToHTML.convertBatch(new String[] {"-batch", "-odir=" + outputDir.getPath(),
+                new File(inputDir, "report.pdf").getPath(), new File(inputDir, "sub/report.pdf").getPath()});
+
+        Assert.assertEquals(1, failed);
+        Assert.assertTrue(new File(outputDir, "report.html").exists());
+    }
+
+    @Test
+    public void givenInvalidThreadCount_whenConvertedInBatch_thenRejected() throws Exception
+    {
+        Assert.assertEquals(-1, PDFToHTML.convertBatch(new String[] {"-batch", "-threads=many", inputDir.getPath()}));
+        Assert.assertEquals(-1, PDFToHTML.convertBatch(new String[] {"-batch", "-threads", inputDir.getPath()}));
+    }
+
+    private static void copyResource(String resource, File target) throws Exception
+    {
+        InputStream is = TestPDFToHTML.class.getResourceAsStream(resource);
+        try
+        {
+            FileUtils.copyInputStreamToFile(is, target);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+}
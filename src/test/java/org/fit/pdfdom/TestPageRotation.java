@@ -1,10 +1,22 @@
 package org.fit.pdfdom;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,6 +24,9 @@ public class TestPageRotation
 {
     private static final String testPath = "/page-rotation/";
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void rotated_270Degrees_withTopLeftImage_GivesImageTranslatedToBottomLeft() throws Exception
     {
@@ -96,6 +111,76 @@ public class TestPageRotation
         TestUtils.assertInTopRightCorner(imageRect, findPageRect(html));
     }
 
+    @Test
+    public void rotated_90Degrees_withImage_GivesImageRotatedUsingCss() throws Exception
+    {
+        Document html = TestUtils.parseWithPdfDomTree(testPath + "object-page-rotate-90.pdf");
+        String style = html.select("img").first().attr("style");
+
+        Assert.assertTrue(style.contains("transform:rotate("));
+    }
+
+    @Test
+    public void rotated_90Degrees_withImageAndPixelRotation_GivesNoCssRotation() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setRotateImagePixels(true);
+        Document html = TestUtils.parseWithPdfDomTree(testPath + "object-page-rotate-90.pdf", config);
+        String style = html.select("img").first().attr("style");
+
+        Assert.assertFalse(style.contains("transform"));
+    }
+
+    @Test
+    public void rotated_0Degrees_withImage_GivesNoCssRotation() throws Exception
+    {
+        Document html = TestUtils.parseWithPdfDomTree(testPath + "object-page-rotate-0.pdf");
+        String style = html.select("img").first().attr("style");
+
+        Assert.assertFalse(style.contains("transform"));
+    }
+
+    @Test
+    public void givenPagesWithDifferentRotations_whenConverted_thenEachPageUsesItsOwnTransformation() throws Exception
+    {
+        PDDocument pdf = createRotatedDocument();
+        Document html = Jsoup.parse(new PDFDomTree().getText(pdf));
+        pdf.close();
+
+        Elements pages = html.select("div.page");
+        Assert.assertEquals(4, pages.size());
+        String first = pages.get(0).select("div.r").first().attr("style");
+        String rotated = pages.get(1).select("div.r").first().attr("style");
+        String third = pages.get(2).select("div.r").first().attr("style");
+        //the unrotated pages share the transformation, the rotated page between them does not affect it
+        Assert.assertEquals(first, third);
+        Assert.assertNotEquals(first, rotated);
+
+        Rectangle2D.Double rotatedPage = findStyleRect(pages.get(1).attr("style"));
+        Assert.assertEquals(792, rotatedPage.width, 0.01);
+        Assert.assertEquals(612, rotatedPage.height, 0.01);
+        TestUtils.assertInBottomLeftCorner(findStyleRect(rotated), rotatedPage);
+    }
+
+    @Test
+    public void givenMultiFontRotatedPages_whenConvertedInParallel_thenSameDomAsSequential() throws Exception
+    {
+        File file = folder.newFile("rotated.pdf");
+        PDDocument pdf = createRotatedDocument();
+        pdf.save(file);
+        Document expected = Jsoup.parse(new PDFDomTree().getText(pdf));
+        pdf.close();
+
+        Writer output = new StringWriter();
+        new ParallelPDFDomTree(PDFDomTreeConfig.createDefaultConfig(), 4).writeText(file, output);
+        Document html = Jsoup.parse(output.toString());
+
+        Assert.assertEquals(expected.select("div.page").eachAttr("style"), html.select("div.page").eachAttr("style"));
+        Assert.assertEquals(expected.select("div.p").eachText(), html.select("div.p").eachText());
+        Assert.assertEquals(expected.select("div.p").eachAttr("style"), html.select("div.p").eachAttr("style"));
+        Assert.assertEquals(expected.select("div.r").eachAttr("style"), html.select("div.r").eachAttr("style"));
+    }
+
     private static Rectangle2D.Double findPageRect(Document html) {
         Element page = html.select("div.page").first();
         String style = page.attr("style");
@@ -121,4 +206,33 @@ public class TestPageRotation
 
         return 0.0;
     }
+
+    /**
+     * Creates a document with the same content on four pages rotated by 0, 90, 0 and 270 degrees.
+     * The content consists of text in two fonts at the top left corner and a rectangle
+     * at the bottom right corner.
+     */
+    private static PDDocument createRotatedDocument() throws Exception
+    {
+        PDDocument pdf = new PDDocument();
+        for (int rotation : new int[] {0, 90, 0, 270})
+        {
+            PDPage page = new PDPage();
+            page.setRotation(rotation);
+            pdf.addPage(page);
+            PDPageContentStream content = new PDPageContentStream(pdf, page);
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA_BOLD, 12);
+            content.newLineAtOffset(50, 700);
+            content.showText("Heading");
+            content.setFont(PDType1Font.TIMES_ITALIC, 10);
+            content.newLineAtOffset(0, -20);
+            content.showText("Caption");
+            content.endText();
+            content.addRect(450, 50, 100, 50);
+            content.fill();
+            content.close();
+        }
+        return pdf;
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ *  Pdf2Dom is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Pdf2Dom is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fit.pdfdom;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestPathBuffer
+{
+    @Test
+    public void givenManySegments_whenAdded_thenAllSegmentsKeptInOrder() throws Exception
+    {
+        PathBuffer path = new PathBuffer();
+        for (int i = 0; i < 100; i++)
+            path.addLine(i, i + 1, i + 2, i + 3);
+        path.addClose(99, 100, 0, 1);
+
+        Assert.assertEquals(101, path.size());
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertEquals(PathBuffer.LINE, path.getKind(i));
+            Assert.assertEquals(i, path.getX1(i), 0f);
+            Assert.assertEquals(i + 1, path.getY1(i), 0f);
+            Assert.assertEquals(i + 2, path.getX2(i), 0f);
+            Assert.assertEquals(i + 3, path.getY2(i), 0f);
+        }
+        Assert.assertEquals(PathBuffer.CLOSE, path.getKind(100));
+    }
+
+    @Test
+    public void givenFilledBuffer_whenCleared_thenReusedForNewPath() throws Exception
+    {
+        PathBuffer path = new PathBuffer();
+        path.addLine(0, 0, 10, 0);
+        path.addLine(10, 0, 10, 10);
+        path.clear();
+
+        Assert.assertTrue(path.isEmpty());
+        path.addLine(5, 5, 6, 6);
+        Assert.assertEquals(1, path.size());
+        Assert.assertEquals(5, path.getX1(0), 0f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void givenClearedBuffer_whenOldSegmentRead_thenRejected() throws Exception
+    {
+        PathBuffer path = new PathBuffer();
+        path.addLine(0, 0, 10, 0);
+        path.clear();
+        path.getX1(0);
+    }
+
+    @Test
+    public void givenBuffer_whenConvertedToSegments_thenSameCoordinates() throws Exception
+    {
+        PathBuffer path = new PathBuffer();
+        path.addLine(1, 2, 3, 4);
+        path.addClose(3, 4, 1, 2);
+        List<PathSegment> segments = path.toSegments();
+
+        Assert.assertEquals(2, segments.size());
+        Assert.assertEquals(3, segments.get(1).getX1(), 0f);
+        Assert.assertEquals(2, segments.get(1).getY2(), 0f);
+        Assert.assertEquals(segments.size(), new PathBuffer(segments).size());
+    }
+}
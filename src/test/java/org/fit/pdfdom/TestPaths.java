@@ -18,8 +18,14 @@
 package org.fit.pdfdom;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mabb.gfxassert.geom.ShapeSubset;
@@ -28,6 +34,11 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.mabb.gfxassert.GfxAssertMatchers.containsColor;
 import static org.mabb.gfxassert.geom.ShapeSubset.*;
@@ -58,4 +69,178 @@ public class TestPaths
         Assert.assertThat(image, containsColor(fillColor).in(bottomArea()));
         Assert.assertThat(image, containsColor(fillColor).in(topArea()));
     }
+
+    @Test
+    public void givenPdfFilledNonRectPath_whenConvertedWithSvgPaths_thenSvgPathCreated() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setSvgPaths(true);
+        Document html = TestUtils.parseWithPdfDomTree("/shapes/arrow-path.pdf", config);
+
+        Assert.assertTrue(html.select("img").isEmpty());
+        Elements paths = html.select("div.page > svg path");
+        Assert.assertFalse(paths.isEmpty());
+        Element path = paths.first();
+        Assert.assertTrue(path.attr("d").startsWith("M"));
+        Assert.assertTrue(path.attr("fill").startsWith("#"));
+    }
+
+    @Test
+    public void givenPdfRectangleUnderPath_whenConvertedWithSvgPaths_thenBothInSvgInPaintingOrder() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setSvgPaths(true);
+        Document html = TestUtils.parseWithPdfDomTree(createPathDocument(false), config);
+
+        Assert.assertTrue(html.select("div.r").isEmpty());
+        Elements paths = html.select("div.page > svg path");
+        Assert.assertEquals(2, paths.size());
+        Assert.assertEquals("#ffffff", paths.get(0).attr("fill"));
+        Assert.assertEquals("#ff0000", paths.get(1).attr("fill"));
+        Assert.assertFalse(paths.get(1).hasAttr("fill-rule"));
+    }
+
+    @Test
+    public void givenPdfWithPaths_whenConvertedWithSvgPaths_thenPathLayerStackedWithinPage() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setSvgPaths(true);
+        Document html = TestUtils.parseWithPdfDomTree(createPathDocument(false), config);
+
+        Element layer = html.select("div.page > svg").first();
+        Assert.assertNotNull(layer);
+        Assert.assertTrue(layer.attr("style").contains("z-index:-1"));
+        //the page must form a stacking context, otherwise the layer is painted below the page background
+        Assert.assertTrue(html.select("style").html().contains(".page{position:relative;z-index:0;"));
+    }
+
+    @Test
+    public void givenPdfEvenOddPath_whenConvertedWithSvgPaths_thenEvenOddFillRuleUsed() throws Exception
+    {
+        PDFDomTreeConfig config = PDFDomTreeConfig.createDefaultConfig();
+        config.setSvgPaths(true);
+        Document html = TestUtils.parseWithPdfDomTree(createPathDocument(true), config);
+
+        Elements paths = html.select("div.page > svg path");
+        Assert.assertEquals(2, paths.size());
+        Assert.assertFalse(paths.get(0).hasAttr("fill-rule"));
+        Assert.assertEquals("evenodd", paths.get(1).attr("fill-rule"));
+    }
+
+    @Test
+    public void givenPdfRectangleAndTriangle_whenConverted_thenPathsPassedInOneReusedBuffer() throws Exception
+    {
+        final List<PathBuffer> buffers = new ArrayList<PathBuffer>();
+        final List<PathBuffer> copies = new ArrayList<PathBuffer>();
+        PDFDomTree parser = new PDFDomTree() {
+            @Override
+            protected void renderPath(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd) throws IOException
+            {
+                buffers.add(path);
+                copies.add(new PathBuffer(path.toSegments()));
+                super.renderPath(path, stroke, fill, evenOdd);
+            }
+        };
+        PDDocument pdf = PDDocument.load(createPathDocument(false));
+        parser.getText(pdf);
+        pdf.close();
+
+        Assert.assertEquals(2, buffers.size());
+        Assert.assertSame(buffers.get(0), buffers.get(1));
+        Assert.assertTrue(buffers.get(0).isEmpty());
+        //the rectangle is split to four lines
+        Assert.assertEquals(4, copies.get(0).size());
+        //the triangle: two lines and the closing segment; the page is 792pt high
+        PathBuffer triangle = copies.get(1);
+        Assert.assertEquals(3, triangle.size());
+        Assert.assertEquals(100f, triangle.getX1(0), 0.01f);
+        Assert.assertEquals(692f, triangle.getY1(0), 0.01f);
+        Assert.assertEquals(300f, triangle.getX2(0), 0.01f);
+        Assert.assertEquals(692f, triangle.getY2(0), 0.01f);
+    }
+
+    @Test
+    public void givenHandlersAddedBySubclass_whenConverted_thenInvokedAndClippingPathNotRendered() throws Exception
+    {
+        final List<String> handled = new ArrayList<String>();
+        final List<Integer> rendered = new ArrayList<Integer>();
+        PDFDomTree parser = new PDFDomTree() {
+            {
+                //wrap a standard handler and add a handler of an operator that has none
+                final OperatorHandler rect = getOperatorHandler("re");
+                addOperatorHandler("re", new OperatorHandler() {
+                    public void process(Operator operator, List<COSBase> arguments) throws IOException
+                    {
+                        handled.add(operator.getName());
+                        rect.process(operator, arguments);
+                    }
+                });
+                addOperatorHandler("BT", new OperatorHandler() {
+                    public void process(Operator operator, List<COSBase> arguments)
+                    {
+                        handled.add(operator.getName());
+                    }
+                });
+            }
+
+            @Override
+            protected void renderPath(PathBuffer path, boolean stroke, boolean fill, boolean evenOdd) throws IOException
+            {
+                rendered.add(path.size());
+                super.renderPath(path, stroke, fill, evenOdd);
+            }
+        };
+
+        PDDocument pdf = new PDDocument();
+        PDPage page = new PDPage();
+        pdf.addPage(page);
+        PDPageContentStream content = new PDPageContentStream(pdf, page);
+        //a clipping path is ended by the n operator without painting
+        content.addRect(0, 0, 300, 300);
+        content.clip();
+        content.beginText();
+        content.endText();
+        content.setNonStrokingColor(Color.RED);
+        content.moveTo(100, 100);
+        content.lineTo(300, 100);
+        content.lineTo(200, 300);
+        content.closePath();
+        content.fill();
+        content.close();
+        parser.getText(pdf);
+        pdf.close();
+
+        Assert.assertEquals(Arrays.asList("re", "BT"), handled);
+        Assert.assertEquals(Arrays.asList(3), rendered);
+    }
+
+    /**
+     * Creates a single page document with a white background rectangle and a red triangle painted over it.
+     */
+    private static ByteArrayInputStream createPathDocument(boolean evenOdd) throws IOException
+    {
+        PDDocument pdf = new PDDocument();
+        PDPage page = new PDPage();
+        pdf.addPage(page);
+
+        PDPageContentStream content = new PDPageContentStream(pdf, page);
+        content.setNonStrokingColor(Color.WHITE);
+        content.addRect(0, 0, page.getMediaBox().getWidth(), page.getMediaBox().getHeight());
+        content.fill();
+        content.setNonStrokingColor(Color.RED);
+        content.moveTo(100, 100);
+        content.lineTo(300, 100);
+        content.lineTo(200, 300);
+        content.closePath();
+        if (evenOdd)
+            content.fillEvenOdd();
+        else
+            content.fill();
+        content.close();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdf.save(out);
+        pdf.close();
+        return new ByteArrayInputStream(out.toByteArray());
+    }
 }